@@ -0,0 +1,87 @@
+#ifdef GL_ES
+#define LOWP lowp
+#define MED mediump
+#define HIGH highp
+precision mediump float;
+#else
+#define MED
+#define LOWP
+#define HIGH
+#endif
+
+varying vec4 v_color;
+varying vec3 v_normal;
+varying vec2 v_rawUV;
+varying vec3 v_position;
+
+uniform sampler2D u_texture;
+// Fragments with alpha at or below this are discarded, -1 to keep everything
+uniform float u_alphaTest;
+
+const int mapWidth = 2048, mapHeight = 2048, blockWidth = 32;
+const float uPerBlock = float(blockWidth) / float(mapWidth),
+            vPerBlock = float(blockWidth) / float(mapHeight);
+
+struct SHC{
+    vec3 L00, L1m1, L10, L11, L2m2, L2m1, L20, L21, L22;
+};
+
+SHC groove = SHC(
+    vec3( 0.3783264,  0.4260425,  0.4504587),
+    vec3( 0.2887813,  0.3586803,  0.4147053),
+    vec3( 0.0379030,  0.0295216,  0.0098567),
+    vec3(-0.1033028, -0.1031690, -0.0884924),
+    vec3(-0.0621750, -0.0554432, -0.0396779),
+    vec3( 0.0077820, -0.0148312, -0.0471301),
+    vec3(-0.0935561, -0.1254260, -0.1525629),
+    vec3(-0.0572703, -0.0502192, -0.0363410),
+    vec3( 0.0203348, -0.0044201, -0.0452180)
+);
+
+vec3 sh_light(vec3 normal, SHC l){
+    float x = normal.x;
+    float y = normal.y;
+    float z = normal.z;
+
+    const float C1 = 0.429043;
+    const float C2 = 0.511664;
+    const float C3 = 0.743125;
+    const float C4 = 0.886227;
+    const float C5 = 0.247708;
+
+    return (
+        C1 * l.L22 * (x * x - y * y) +
+        C3 * l.L20 * z * z +
+        C4 * l.L00 -
+        C5 * l.L20 +
+        2.0 * C1 * l.L2m2 * x * y +
+        2.0 * C1 * l.L21  * x * z +
+        2.0 * C1 * l.L2m1 * y * z +
+        2.0 * C2 * l.L11  * x +
+        2.0 * C2 * l.L1m1 * y +
+        2.0 * C2 * l.L10  * z
+    );
+}
+
+vec3 gamma(vec3 color){
+    return pow(color, vec3(1.0/2.0));
+}
+
+void main() {
+    // Greedy meshed faces span several blocks, repeat the tile across them
+    vec3 texGetNormal = -abs(v_normal);
+    vec2 uvMult = fract(vec2(dot(texGetNormal.zxy, v_position),
+                           dot(texGetNormal.yzx, v_position)));
+    vec2 v_texUV;
+    if(v_normal.x != 0.0) {
+    	v_texUV = v_rawUV+vec2(vPerBlock*uvMult.y, uPerBlock*uvMult.x);
+    } else {
+    	v_texUV = v_rawUV+vec2(uPerBlock*uvMult.x, vPerBlock*uvMult.y);
+    }
+
+    gl_FragColor = texture2D(u_texture, v_texUV) * v_color;
+    if (gl_FragColor.a <= u_alphaTest)
+    	discard;
+
+	gl_FragColor = vec4(gl_FragColor.xyz*gamma(sh_light(v_normal, groove)), gl_FragColor.w);
+}
@@ -0,0 +1,50 @@
+// Chunk geometry drawn by ChunkRenderer, in the packed vertex format from VertexWriter
+
+// Bytes: x, y and z in 1/16ths of a block relative to the chunk, then their high bits (x 1 bit, z 1 bit, y 5 bits)
+attribute vec4 a_position;
+// Bytes: atlas tile low byte, then tile high nibble and face index in the high nibble, then the chunk's slot in its region
+attribute vec4 a_packed;
+attribute vec4 a_color;
+
+uniform mat4 u_projViewTrans;
+// World position of the region being drawn
+uniform vec3 u_origin;
+
+const float positionScale = 16.0;
+// Have to match World.CHUNK_SIZE and ChunkRenderer.REGION_SIZE
+const float chunkSize = 16.0, regionSize = 4.0;
+const float tilesPerRow = 64.0, tileSize = 32.0 / 2048.0;
+
+varying vec4 v_color;
+varying vec3 v_normal;
+varying vec2 v_rawUV;
+varying vec3 v_position;
+
+// Normal for a face index, in the order of the Side enum
+vec3 faceNormal(float face) {
+    if (face < 0.5) return vec3(0.0, 1.0, 0.0);
+    if (face < 1.5) return vec3(0.0, -1.0, 0.0);
+    if (face < 2.5) return vec3(-1.0, 0.0, 0.0);
+    if (face < 3.5) return vec3(1.0, 0.0, 0.0);
+    if (face < 4.5) return vec3(0.0, 0.0, 1.0);
+    return vec3(0.0, 0.0, -1.0);
+}
+
+void main() {
+    // Attributes come in normalized, get the original bytes back
+    vec4 posBytes = floor(a_position * 255.0 + 0.5);
+    vec3 highBits = vec3(mod(posBytes.w, 2.0), floor(posBytes.w / 4.0), mod(floor(posBytes.w / 2.0), 2.0));
+    vec4 dataBytes = floor(a_packed * 255.0 + 0.5);
+    vec3 chunkOffset = vec3(mod(dataBytes.z, regionSize), 0.0, floor(dataBytes.z / regionSize)) * chunkSize;
+    vec3 position = u_origin + chunkOffset + (posBytes.xyz + highBits * 256.0) / positionScale;
+
+    float tile = dataBytes.x + mod(dataBytes.y, 16.0) * 256.0;
+    float face = floor(dataBytes.y / 16.0);
+
+    v_rawUV = vec2(mod(tile, tilesPerRow), floor(tile / tilesPerRow)) * tileSize;
+    v_position = position;
+    v_color = a_color;
+    v_normal = faceNormal(face);
+
+    gl_Position = u_projViewTrans * vec4(position, 1.0);
+}
@@ -23,10 +23,11 @@ varying vec4 v_color;
 
 #ifdef blendedFlag
 varying float v_opacity;
+#endif //blendedFlag
+
 #ifdef alphaTestFlag
 varying float v_alphaTest;
 #endif //alphaTestFlag
-#endif //blendedFlag
 
 #if defined(diffuseTextureFlag) || defined(specularTextureFlag)
 #define textureFlag
@@ -115,12 +115,13 @@ const float u_shininess = 20.0;
 #ifdef blendedFlag
 uniform float u_opacity;
 varying float v_opacity;
+#endif // blendedFlag
 
+// Alpha testing is used on its own for cutout geometry, not just along with blending
 #ifdef alphaTestFlag
 uniform float u_alphaTest;
 varying float v_alphaTest;
 #endif //alphaTestFlag
-#endif // blendedFlag
 
 #ifdef lightingFlag
 varying vec3 v_lightDiffuse;
@@ -197,11 +198,9 @@ void main() {
 		v_color = a_color;
 	#endif // colorFlag
 
-	#ifdef blendedFlag
-		#ifdef alphaTestFlag
-			v_alphaTest = u_alphaTest;
-		#endif //alphaTestFlag
-	#endif // blendedFlag
+	#ifdef alphaTestFlag
+		v_alphaTest = u_alphaTest;
+	#endif //alphaTestFlag
 
 	gl_Position = u_projViewTrans * u_worldTrans *  vec4(a_position, 1.0);
 
@@ -18,6 +18,7 @@ public class Block extends Item {
     private final float hardness;
     private final ToolMaterial requiredMaterial;
     private final ToolType requiredType;
+    private RenderLayer renderLayer;
 
     /**
      * DO NOT USE THIS CONSTRUCTOR, USE BLOCKBUILDER INSTEAD
@@ -50,6 +51,16 @@ public class Block extends Item {
         return this.translucent;
     }
 
+    /**
+     * @return Layer the block's faces are drawn in.
+     *         Unless set otherwise, translucent blocks are assumed to be cutout and everything else opaque.
+     */
+    public RenderLayer getRenderLayer() {
+        if (renderLayer != null)
+            return renderLayer;
+        return translucent ? RenderLayer.CUTOUT : RenderLayer.OPAQUE;
+    }
+
     public boolean isSolid() {
         return this.solid;
     }
@@ -153,6 +164,13 @@ public class Block extends Item {
         this.translucent = translucent;
     }
 
+    /**
+     * Set the layer the block's faces are drawn in, or null to go by whether the block is translucent
+     */
+    public void setRenderLayer(RenderLayer renderLayer) {
+        this.renderLayer = renderLayer;
+    }
+
     /**
      * Set whether to occlude neighbors that the block is covering
      */
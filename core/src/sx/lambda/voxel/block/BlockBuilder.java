@@ -24,6 +24,7 @@ public class BlockBuilder {
     private ToolType requiredToolType = ToolType.THESE_HANDS;
     private ToolMaterial requiredToolMaterial = ToolMaterial.THESE_HANDS;
     private String customClass = null;
+    private RenderLayer renderLayer = null;
 
     /**
      * Set the display name for the block
@@ -142,6 +143,16 @@ public class BlockBuilder {
         return this;
     }
 
+    /**
+     * Set the layer the block's faces are drawn in
+     *
+     * Defaults to null, which makes translucent blocks cutout and everything else opaque
+     */
+    public BlockBuilder setRenderLayer(RenderLayer renderLayer) {
+        this.renderLayer = renderLayer;
+        return this;
+    }
+
     public BlockBuilder dontMerge() {
         this.greedyMerge = false;
         return this;
@@ -199,7 +210,7 @@ public class BlockBuilder {
         }
 
         if(customClass == null) {
-            return new Block(id, humanName, renderer, textureLocations, translucent, solid, lightPassthrough, selectable, occludeCovered, decreaseLight, greedyMerge, lightValue, hardness, requiredToolMaterial, requiredToolType);
+            return applyRenderLayer(new Block(id, humanName, renderer, textureLocations, translucent, solid, lightPassthrough, selectable, occludeCovered, decreaseLight, greedyMerge, lightValue, hardness, requiredToolMaterial, requiredToolType));
         } else {
             // Use reflection to invoke the constructor of the custom class specified
 
@@ -208,7 +219,7 @@ public class BlockBuilder {
                 try {
                     Constructor co = cl.getDeclaredConstructor(int.class, String.class, BlockRenderer.class, String[].class, boolean.class, boolean.class, boolean.class, boolean.class, boolean.class, boolean.class, boolean.class, int.class, float.class, ToolMaterial.class, ToolType.class);
                     co.setAccessible(true);
-                    return (Block)co.newInstance(id, humanName, renderer, textureLocations, translucent, solid, lightPassthrough, selectable, occludeCovered, decreaseLight, greedyMerge, lightValue, hardness, requiredToolMaterial, requiredToolType);
+                    return applyRenderLayer((Block)co.newInstance(id, humanName, renderer, textureLocations, translucent, solid, lightPassthrough, selectable, occludeCovered, decreaseLight, greedyMerge, lightValue, hardness, requiredToolMaterial, requiredToolType));
                 } catch(Exception ex) {
                     ex.printStackTrace();
                     throw new CustomClassException(
@@ -228,6 +239,15 @@ public class BlockBuilder {
         }
     }
 
+    /**
+     * Overrides the layer the block picked for itself, if one was set on the builder
+     */
+    private Block applyRenderLayer(Block block) {
+        if (renderLayer != null)
+            block.setRenderLayer(renderLayer);
+        return block;
+    }
+
     public class MissingElementException extends Exception {
         public MissingElementException(String missingEl) {
             super("You cannot create a block without " + missingEl);
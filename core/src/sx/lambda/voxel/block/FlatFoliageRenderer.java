@@ -1,7 +1,7 @@
 package sx.lambda.voxel.block;
 
-import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
 import sx.lambda.voxel.client.render.meshing.PerCornerLightData;
+import sx.lambda.voxel.client.render.meshing.VertexWriter;
 
 /**
  * Renders foliage blocks, such as tall grass, as a "+" made out of their textures.
@@ -9,29 +9,29 @@ import sx.lambda.voxel.client.render.meshing.PerCornerLightData;
 public class FlatFoliageRenderer extends NormalBlockRenderer {
 
     @Override
-    public void renderNorth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
-        super.renderNorth(atlasIndex, x1, y1, x2, y2, z - 0.5f, lightLevel, pcld, builder);
+    public void renderNorth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
+        super.renderNorth(atlasIndex, x1, y1, x2, y2, z - 0.5f, lightLevel, pcld, writer);
     }
 
     @Override
-    public void renderSouth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
-        super.renderSouth(atlasIndex, x1, y1, x2, y2, z + 0.5f, lightLevel, pcld, builder);
+    public void renderSouth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
+        super.renderSouth(atlasIndex, x1, y1, x2, y2, z + 0.5f, lightLevel, pcld, writer);
     }
 
     @Override
-    public void renderWest(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
-        super.renderWest(atlasIndex, z1, y1, z2, y2, x + 0.5f, lightLevel, pcld, builder);
+    public void renderWest(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
+        super.renderWest(atlasIndex, z1, y1, z2, y2, x + 0.5f, lightLevel, pcld, writer);
     }
 
     @Override
-    public void renderEast(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
-        super.renderEast(atlasIndex, z1, y1, z2, y2, x - 0.5f, lightLevel, pcld, builder);
+    public void renderEast(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
+        super.renderEast(atlasIndex, z1, y1, z2, y2, x - 0.5f, lightLevel, pcld, writer);
     }
 
     @Override
-    public void renderTop(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {}
+    public void renderTop(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {}
     @Override
-    public void renderBottom(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {}
+    public void renderBottom(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {}
 
     @Override
     public String getUniqueID() {
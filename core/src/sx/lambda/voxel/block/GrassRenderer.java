@@ -1,10 +1,9 @@
 package sx.lambda.voxel.block;
 
-import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
-import com.badlogic.gdx.graphics.g3d.utils.MeshPartBuilder;
 import sx.lambda.voxel.RadixClient;
 import sx.lambda.voxel.api.RadixAPI;
 import sx.lambda.voxel.client.render.meshing.PerCornerLightData;
+import sx.lambda.voxel.client.render.meshing.VertexWriter;
 import sx.lambda.voxel.world.biome.Biome;
 import sx.lambda.voxel.world.chunk.IChunk;
 
@@ -22,35 +21,28 @@ public class GrassRenderer extends NormalBlockRenderer {
             BOTTOM_OFFSET = 2;
 
     @Override
-    public void renderNorth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
-        super.renderNorth(atlasIndex + SIDE_OFFSET, x1, y1, x2, y2, z, lightLevel, pcld, builder);
+    public void renderNorth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
+        super.renderNorth(atlasIndex + SIDE_OFFSET, x1, y1, x2, y2, z, lightLevel, pcld, writer);
     }
 
     @Override
-    public void renderSouth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
-        super.renderSouth(atlasIndex + SIDE_OFFSET, x1, y1, x2, y2, z, lightLevel, pcld, builder);
+    public void renderSouth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
+        super.renderSouth(atlasIndex + SIDE_OFFSET, x1, y1, x2, y2, z, lightLevel, pcld, writer);
     }
 
     @Override
-    public void renderEast(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
-        super.renderEast(atlasIndex + SIDE_OFFSET, z1, y1, z2, y2, x, lightLevel, pcld, builder);
+    public void renderEast(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
+        super.renderEast(atlasIndex + SIDE_OFFSET, z1, y1, z2, y2, x, lightLevel, pcld, writer);
     }
 
     @Override
-    public void renderWest(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
-        super.renderWest(atlasIndex + SIDE_OFFSET, z1, y1, z2, y2, x, lightLevel, pcld, builder);
+    public void renderWest(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
+        super.renderWest(atlasIndex + SIDE_OFFSET, z1, y1, z2, y2, x, lightLevel, pcld, writer);
     }
 
     @Override
-    public void renderTop(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
-        float u = getU(atlasIndex);
-        float v = getV(atlasIndex);
-        builder.setUVRange(u, v, u, v);
-
-        MeshPartBuilder.VertexInfo c00 = new MeshPartBuilder.VertexInfo().setPos(x1, y, z1).setNor(0, 1, 0);
-        MeshPartBuilder.VertexInfo c01 = new MeshPartBuilder.VertexInfo().setPos(x1, y, z2).setNor(0, 1, 0);
-        MeshPartBuilder.VertexInfo c10 = new MeshPartBuilder.VertexInfo().setPos(x2, y, z1).setNor(0, 1, 0);
-        MeshPartBuilder.VertexInfo c11 = new MeshPartBuilder.VertexInfo().setPos(x2, y, z2).setNor(0, 1, 0);
+    public void renderTop(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
+        writer.setSide(Side.TOP).setTexture(atlasIndex);
 
         IChunk chunk = RadixClient.getInstance().getWorld().getChunk((int) x1, (int) z1);
         Biome biome;
@@ -63,21 +55,13 @@ public class GrassRenderer extends NormalBlockRenderer {
         float r = color[0]/255f;
         float g = color[1]/255f;
         float b = color[2]/255f;
-        if(pcld == null) {
-            builder.setColor(r*lightLevel, g*lightLevel, b*lightLevel, 1);
-        } else {
-            c00.setCol(r*pcld.l00, g*pcld.l00, b*pcld.l00, 1);
-            c01.setCol(r*pcld.l01, g*pcld.l01, b*pcld.l01, 1);
-            c10.setCol(r*pcld.l10, g*pcld.l10, b*pcld.l10, 1);
-            c11.setCol(r*pcld.l11, g*pcld.l11, b*pcld.l11, 1);
-        }
-
-        builder.rect(c01, c11, c10, c00);
+        writeQuad(writer, r, g, b, 1, lightLevel, pcld, true,
+                x1, y, z1, x1, y, z2, x2, y, z1, x2, y, z2);
     }
 
     @Override
-    public void renderBottom(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
-        super.renderBottom(atlasIndex + BOTTOM_OFFSET, x1, z1, x2, z2, y, lightLevel, pcld, builder);
+    public void renderBottom(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
+        super.renderBottom(atlasIndex + BOTTOM_OFFSET, x1, z1, x2, z2, y, lightLevel, pcld, writer);
     }
 
     @Override
@@ -18,6 +18,10 @@ public class JsonBlock {
     private final float hardness;
     private final ToolMaterial requiredMaterial;
     private final ToolType requiredType;
+    /**
+     * Layer to draw the block's faces in. Optional, by default translucent blocks are cutout and everything else is opaque.
+     */
+    private final RenderLayer renderLayer;
 
     /**
      * Fully qualified name of a custom class to use when creating the block.
@@ -50,6 +54,7 @@ public class JsonBlock {
         requiredMaterial = ToolMaterial.THESE_HANDS;
         requiredType = ToolType.THESE_HANDS;
         customClass = null;
+        renderLayer = null;
     }
 
     /**
@@ -72,6 +77,7 @@ public class JsonBlock {
         greedyMerge = b.shouldGreedyMerge();
         lightValue = b.getLightValue();
         customClass = b.getClass().getName();
+        renderLayer = b.getRenderLayer();
     }
 
     /**
@@ -93,7 +99,8 @@ public class JsonBlock {
                 .setHumanName(humanName).setID(id).setTextureLocations(textureLocations).setRenderer(renderer)
                 .setHardness(hardness).setRequiredToolMaterial(requiredMaterial).setRequiredToolType(requiredType)
                 .setTranslucent(translucent).setSolid(solid).setLightPassthrough(lightPassthrough).setOccludeCovered(occludeCovered)
-                .setDecreaseLight(decreaseLight).setSelectable(selectable).setLightValue(lightValue).setCustomClass(customClass);
+                .setDecreaseLight(decreaseLight).setSelectable(selectable).setLightValue(lightValue).setCustomClass(customClass)
+                .setRenderLayer(renderLayer);
         if(!greedyMerge)
             builder.dontMerge();
 
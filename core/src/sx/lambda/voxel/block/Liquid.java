@@ -14,6 +14,8 @@ public class Liquid extends Block {
 
     Liquid(int id, String humanName, BlockRenderer renderer, String[] textureLocations, boolean translucent, boolean solid, boolean lightPassthrough, boolean selectable, boolean occludeCovered, boolean decreaseLight, boolean greedyMerge, int lightValue, float hardness, Tool.ToolMaterial requiredMaterial, Tool.ToolType requiredType) {
         super(id, humanName, renderer, textureLocations, translucent, solid, lightPassthrough, selectable, occludeCovered, decreaseLight, greedyMerge, lightValue, hardness, requiredMaterial, requiredType);
+        // See-through liquid needs real blending, the texture isn't just holes
+        setRenderLayer(RenderLayer.TRANSLUCENT);
     }
 
     @Override
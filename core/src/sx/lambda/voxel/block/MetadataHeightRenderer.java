@@ -1,9 +1,9 @@
 package sx.lambda.voxel.block;
 
-import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
 import com.badlogic.gdx.math.MathUtils;
 import sx.lambda.voxel.RadixClient;
 import sx.lambda.voxel.client.render.meshing.PerCornerLightData;
+import sx.lambda.voxel.client.render.meshing.VertexWriter;
 import sx.lambda.voxel.world.IWorld;
 import sx.lambda.voxel.world.chunk.BlockStorage.CoordinatesOutOfBoundsException;
 import sx.lambda.voxel.world.chunk.IChunk;
@@ -26,7 +26,7 @@ public class MetadataHeightRenderer extends NormalBlockRenderer {
     }
 
     @Override
-    public void renderNorth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
+    public void renderNorth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
         int zi = MathUtils.floor(z - 1);
         int xi = MathUtils.floor(x1);
         int yi = MathUtils.floor(y1);
@@ -38,11 +38,11 @@ public class MetadataHeightRenderer extends NormalBlockRenderer {
         } catch (CoordinatesOutOfBoundsException e) {
             e.printStackTrace();
         }
-        super.renderNorth(atlasIndex, x1, y1, x2, y1 + getHeight(meta), z, lightLevel, pcld, builder);
+        super.renderNorth(atlasIndex, x1, y1, x2, y1 + getHeight(meta), z, lightLevel, pcld, writer);
     }
 
     @Override
-    public void renderSouth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
+    public void renderSouth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
         int zi = MathUtils.floor(z);
         int xi = MathUtils.floor(x1);
         int yi = MathUtils.floor(y1);
@@ -54,11 +54,11 @@ public class MetadataHeightRenderer extends NormalBlockRenderer {
         } catch (CoordinatesOutOfBoundsException e) {
             e.printStackTrace();
         }
-        super.renderSouth(atlasIndex, x1, y1, x2, y1 + getHeight(meta), z, lightLevel, pcld, builder);
+        super.renderSouth(atlasIndex, x1, y1, x2, y1 + getHeight(meta), z, lightLevel, pcld, writer);
     }
 
     @Override
-    public void renderWest(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
+    public void renderWest(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
         int zi = MathUtils.floor(z1);
         int xi = MathUtils.floor(x);
         int yi = MathUtils.floor(y1);
@@ -70,11 +70,11 @@ public class MetadataHeightRenderer extends NormalBlockRenderer {
         } catch (CoordinatesOutOfBoundsException e) {
             e.printStackTrace();
         }
-        super.renderWest(atlasIndex, z1, y1, z2, y1 + getHeight(meta), x, lightLevel, pcld, builder);
+        super.renderWest(atlasIndex, z1, y1, z2, y1 + getHeight(meta), x, lightLevel, pcld, writer);
     }
 
     @Override
-    public void renderEast(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
+    public void renderEast(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
         int zi = MathUtils.floor(z1);
         int xi = MathUtils.floor(x - 1);
         int yi = MathUtils.floor(y1);
@@ -86,11 +86,11 @@ public class MetadataHeightRenderer extends NormalBlockRenderer {
         } catch (CoordinatesOutOfBoundsException e) {
             e.printStackTrace();
         }
-        super.renderEast(atlasIndex, z1, y1, z2, y1 + getHeight(meta), x, lightLevel, pcld, builder);
+        super.renderEast(atlasIndex, z1, y1, z2, y1 + getHeight(meta), x, lightLevel, pcld, writer);
     }
 
     @Override
-    public void renderTop(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
+    public void renderTop(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
         int zi = MathUtils.floor(z1);
         int xi = MathUtils.floor(x1);
         int yi = MathUtils.floor(y - 1);
@@ -102,7 +102,7 @@ public class MetadataHeightRenderer extends NormalBlockRenderer {
         } catch (CoordinatesOutOfBoundsException e) {
             e.printStackTrace();
         }
-        super.renderTop(atlasIndex, x1, z1, x2, z2, y - (1 - getHeight(meta)), lightLevel, pcld, builder);
+        super.renderTop(atlasIndex, x1, z1, x2, z2, y - (1 - getHeight(meta)), lightLevel, pcld, writer);
     }
 
     private float getHeight(short metadata) {
@@ -3,10 +3,9 @@ package sx.lambda.voxel.block;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
-import com.badlogic.gdx.graphics.g3d.utils.MeshPartBuilder.VertexInfo;
 import sx.lambda.voxel.RadixClient;
 import sx.lambda.voxel.client.render.meshing.PerCornerLightData;
+import sx.lambda.voxel.client.render.meshing.VertexWriter;
 import sx.lambda.voxel.render.NotInitializedException;
 
 /**
@@ -23,11 +22,6 @@ public class NormalBlockRenderer implements BlockRenderer {
 
     private static boolean initialized;
 
-    private VertexInfo c00 = new VertexInfo();
-    private VertexInfo c01 = new VertexInfo();
-    private VertexInfo c10 = new VertexInfo();
-    private VertexInfo c11 = new VertexInfo();
-
     public NormalBlockRenderer() {}
 
     @Override
@@ -43,153 +37,86 @@ public class NormalBlockRenderer implements BlockRenderer {
     }
 
     @Override
-    public void renderNorth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
+    public void renderNorth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
         // POSITIVE Z
-        float u = getU(atlasIndex);
-        float v = getV(atlasIndex);
-        builder.setUVRange(u, v, u, v);
-
-        c00.setPos(x1, y1, z).setNor(0, 0, 1);
-        c01.setPos(x1, y2, z).setNor(0, 0, 1);
-        c10.setPos(x2, y1, z).setNor(0, 0, 1);
-        c11.setPos(x2, y2, z).setNor(0, 0, 1);
-
+        writer.setSide(Side.NORTH).setTexture(atlasIndex);
         Color c = getColor((int) x1, (int) y1, (int) z - 1);
-        if(pcld == null) {
-            builder.setColor(c.r*lightLevel, c.g*lightLevel, c.b*lightLevel, c.a);
-        } else {
-            c00.setCol(c.r*pcld.l00, c.g*pcld.l00, c.b*pcld.l00, c.a);
-            c01.setCol(c.r*pcld.l01, c.g*pcld.l01, c.b*pcld.l01, c.a);
-            c10.setCol(c.r*pcld.l10, c.g*pcld.l10, c.b*pcld.l10, c.a);
-            c11.setCol(c.r*pcld.l11, c.g*pcld.l11, c.b*pcld.l11, c.a);
-        }
-
-        builder.rect(c00, c10, c11, c01);
+        writeQuad(writer, c.r, c.g, c.b, c.a, lightLevel, pcld, false,
+                x1, y1, z, x1, y2, z, x2, y1, z, x2, y2, z);
     }
 
     @Override
-    public void renderSouth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
+    public void renderSouth(int atlasIndex, float x1, float y1, float x2, float y2, float z, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
         // NEGATIVE Z
-        float u = getU(atlasIndex);
-        float v = getV(atlasIndex);
-        builder.setUVRange(u, v, u, v);
-
-        c00.setPos(x1, y1, z).setNor(0, 0, -1);
-        c01.setPos(x1, y2, z).setNor(0, 0, -1);
-        c10.setPos(x2, y1, z).setNor(0, 0, -1);
-        c11.setPos(x2, y2, z).setNor(0, 0, -1);
-
+        writer.setSide(Side.SOUTH).setTexture(atlasIndex);
         Color c = getColor((int) x1, (int) y1, (int) z);
-        if(pcld == null) {
-            builder.setColor(c.r*lightLevel, c.g*lightLevel, c.b*lightLevel, c.a);
-        } else {
-            c00.setCol(c.r*pcld.l00, c.g*pcld.l00, c.b*pcld.l00, c.a);
-            c01.setCol(c.r*pcld.l01, c.g*pcld.l01, c.b*pcld.l01, c.a);
-            c10.setCol(c.r*pcld.l10, c.g*pcld.l10, c.b*pcld.l10, c.a);
-            c11.setCol(c.r*pcld.l11, c.g*pcld.l11, c.b*pcld.l11, c.a);
-        }
-
-        builder.rect(c01, c11, c10, c00);
+        writeQuad(writer, c.r, c.g, c.b, c.a, lightLevel, pcld, true,
+                x1, y1, z, x1, y2, z, x2, y1, z, x2, y2, z);
     }
 
     @Override
-    public void renderWest(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
+    public void renderWest(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
         // NEGATIVE X
-        float u = getU(atlasIndex);
-        float v = getV(atlasIndex);
-        builder.setUVRange(u, v, u, v);
-
-        c00.setPos(x, y1, z1).setNor(-1, 0, 0);
-        c01.setPos(x, y1, z2).setNor(-1, 0, 0);
-        c10.setPos(x, y2, z1).setNor(-1, 0, 0);
-        c11.setPos(x, y2, z2).setNor(-1, 0, 0);
-
+        writer.setSide(Side.WEST).setTexture(atlasIndex);
         Color c = getColor((int) x, (int) y1, (int) z1);
-        if(pcld == null) {
-            builder.setColor(c.r*lightLevel, c.g*lightLevel, c.b*lightLevel, c.a);
-        } else {
-            c00.setCol(c.r*pcld.l00, c.g*pcld.l00, c.b*pcld.l00, c.a);
-            c01.setCol(c.r*pcld.l01, c.g*pcld.l01, c.b*pcld.l01, c.a);
-            c10.setCol(c.r*pcld.l10, c.g*pcld.l10, c.b*pcld.l10, c.a);
-            c11.setCol(c.r*pcld.l11, c.g*pcld.l11, c.b*pcld.l11, c.a);
-        }
-
-        builder.rect(c01, c11, c10, c00);
+        writeQuad(writer, c.r, c.g, c.b, c.a, lightLevel, pcld, true,
+                x, y1, z1, x, y1, z2, x, y2, z1, x, y2, z2);
     }
 
     @Override
-    public void renderEast(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
+    public void renderEast(int atlasIndex, float z1, float y1, float z2, float y2, float x, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
         // POSITIVE X
-        float u = getU(atlasIndex);
-        float v = getV(atlasIndex);
-        builder.setUVRange(u, v, u, v);
-
-        c00.setPos(x, y1, z1).setNor(1, 0, 0);
-        c01.setPos(x, y1, z2).setNor(1, 0, 0);
-        c10.setPos(x, y2, z1).setNor(1, 0, 0);
-        c11.setPos(x, y2, z2).setNor(1, 0, 0);
-
+        writer.setSide(Side.EAST).setTexture(atlasIndex);
         Color c = getColor((int) x - 1, (int) y1, (int) z1);
-        if(pcld == null) {
-            builder.setColor(c.r*lightLevel, c.g*lightLevel, c.b*lightLevel, c.a);
-        } else {
-            c00.setCol(c.r*pcld.l00, c.g*pcld.l00, c.b*pcld.l00, c.a);
-            c01.setCol(c.r*pcld.l01, c.g*pcld.l01, c.b*pcld.l01, c.a);
-            c10.setCol(c.r*pcld.l10, c.g*pcld.l10, c.b*pcld.l10, c.a);
-            c11.setCol(c.r*pcld.l11, c.g*pcld.l11, c.b*pcld.l11, c.a);
-        }
-
-        builder.rect(c00, c10, c11, c01);
+        writeQuad(writer, c.r, c.g, c.b, c.a, lightLevel, pcld, false,
+                x, y1, z1, x, y1, z2, x, y2, z1, x, y2, z2);
     }
 
     @Override
-    public void renderTop(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
+    public void renderTop(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
         // POSITIVE Y
-        float u = getU(atlasIndex);
-        float v = getV(atlasIndex);
-        builder.setUVRange(u, v, u, v);
-
-        c00.setPos(x1, y, z1).setNor(0, 1, 0);
-        c01.setPos(x1, y, z2).setNor(0, 1, 0);
-        c10.setPos(x2, y, z1).setNor(0, 1, 0);
-        c11.setPos(x2, y, z2).setNor(0, 1, 0);
-
+        writer.setSide(Side.TOP).setTexture(atlasIndex);
         Color c = getColor((int) x1, (int) y - 1, (int) z1);
-        if(pcld == null) {
-            builder.setColor(c.r*lightLevel, c.g*lightLevel, c.b*lightLevel, c.a);
-        } else {
-            c00.setCol(c.r*pcld.l00, c.g*pcld.l00, c.b*pcld.l00, c.a);
-            c01.setCol(c.r*pcld.l01, c.g*pcld.l01, c.b*pcld.l01, c.a);
-            c10.setCol(c.r*pcld.l10, c.g*pcld.l10, c.b*pcld.l10, c.a);
-            c11.setCol(c.r*pcld.l11, c.g*pcld.l11, c.b*pcld.l11, c.a);
-        }
-
-        builder.rect(c01, c11, c10, c00);
+        writeQuad(writer, c.r, c.g, c.b, c.a, lightLevel, pcld, true,
+                x1, y, z1, x1, y, z2, x2, y, z1, x2, y, z2);
     }
 
     @Override
-    public void renderBottom(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, MeshBuilder builder) {
+    public void renderBottom(int atlasIndex, float x1, float z1, float x2, float z2, float y, float lightLevel, PerCornerLightData pcld, VertexWriter writer) {
         // NEGATIVE Y
-        float u = getU(atlasIndex);
-        float v = getV(atlasIndex);
-        builder.setUVRange(u, v, u, v);
-
-        c00.setPos(x1, y, z1).setNor(0, -1, 0);
-        c01.setPos(x1, y, z2).setNor(0, -1, 0);
-        c10.setPos(x2, y, z1).setNor(0, -1, 0);
-        c11.setPos(x2, y, z2).setNor(0, -1, 0);
-
+        writer.setSide(Side.BOTTOM).setTexture(atlasIndex);
         Color c = getColor((int) x1, (int) y, (int) z1);
+        writeQuad(writer, c.r, c.g, c.b, c.a, lightLevel, pcld, false,
+                x1, y, z1, x1, y, z2, x2, y, z1, x2, y, z2);
+    }
+
+    /**
+     * Write a quad tinted by a color, with each corner shaded by its light.
+     *
+     * Corners are named by which end of the face's two axes they're on, the same way PerCornerLightData is.
+     *
+     * @param lightLevel Light for the whole face, used when pcld is null
+     * @param pcld Light for each corner, or null to use lightLevel
+     * @param reversed False to wind c00, c10, c11, c01, true to wind c01, c11, c10, c00
+     */
+    protected static void writeQuad(VertexWriter writer, float r, float g, float b, float a, float lightLevel, PerCornerLightData pcld, boolean reversed,
+                                    float x00, float y00, float z00, float x01, float y01, float z01,
+                                    float x10, float y10, float z10, float x11, float y11, float z11) {
+        int col00, col01, col10, col11;
         if(pcld == null) {
-            builder.setColor(c.r*lightLevel, c.g*lightLevel, c.b*lightLevel, c.a);
+            col00 = col01 = col10 = col11 = VertexWriter.packColor(r*lightLevel, g*lightLevel, b*lightLevel, a);
         } else {
-            c00.setCol(c.r*pcld.l00, c.g*pcld.l00, c.b*pcld.l00, c.a);
-            c01.setCol(c.r*pcld.l01, c.g*pcld.l01, c.b*pcld.l01, c.a);
-            c10.setCol(c.r*pcld.l10, c.g*pcld.l10, c.b*pcld.l10, c.a);
-            c11.setCol(c.r*pcld.l11, c.g*pcld.l11, c.b*pcld.l11, c.a);
+            col00 = VertexWriter.packColor(r*pcld.l00, g*pcld.l00, b*pcld.l00, a);
+            col01 = VertexWriter.packColor(r*pcld.l01, g*pcld.l01, b*pcld.l01, a);
+            col10 = VertexWriter.packColor(r*pcld.l10, g*pcld.l10, b*pcld.l10, a);
+            col11 = VertexWriter.packColor(r*pcld.l11, g*pcld.l11, b*pcld.l11, a);
         }
 
-        builder.rect(c00, c10, c11, c01);
+        if(reversed) {
+            writer.quad(x01, y01, z01, col01, x11, y11, z11, col11, x10, y10, z10, col10, x00, y00, z00, col00);
+        } else {
+            writer.quad(x00, y00, z00, col00, x10, y10, z10, col10, x11, y11, z11, col11, x01, y01, z01, col01);
+        }
     }
 
     protected Color getColor(int x, int y, int z) {
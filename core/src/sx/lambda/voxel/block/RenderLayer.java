@@ -0,0 +1,22 @@
+package sx.lambda.voxel.block;
+
+/**
+ * How a block's faces are drawn, which decides the chunk mesh they end up in
+ */
+public enum RenderLayer {
+
+    /**
+     * Fully opaque. Drawn first, without blending.
+     */
+    OPAQUE,
+    /**
+     * Every pixel is either fully opaque or fully transparent, like leaves and foliage.
+     * Alpha tested and drawn along with the opaque geometry, so it doesn't need blending or sorting.
+     */
+    CUTOUT,
+    /**
+     * Partially transparent, like water. Blended and drawn after everything else.
+     */
+    TRANSLUCENT
+
+}
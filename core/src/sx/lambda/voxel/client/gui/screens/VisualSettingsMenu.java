@@ -28,6 +28,8 @@ public class VisualSettingsMenu implements GuiScreen {
         table.row();
         table.add(visualSettings.getNonContinuous().getManipulationActor());
         table.add(visualSettings.getFinishEachFrame().getManipulationActor());
+        table.row();
+        table.add(visualSettings.getOcclusionCulling().getManipulationActor());
         stage.addActor(table);
     }
 
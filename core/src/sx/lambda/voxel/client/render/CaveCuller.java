@@ -0,0 +1,136 @@
+package sx.lambda.voxel.client.render;
+
+import com.badlogic.gdx.math.Frustum;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import sx.lambda.voxel.block.Side;
+import sx.lambda.voxel.client.render.meshing.SectionConnectivity;
+import sx.lambda.voxel.world.IWorld;
+import sx.lambda.voxel.world.chunk.IChunk;
+
+import java.util.List;
+
+/**
+ * Finds the chunk sections that can be seen from the camera, so caves and buried sections aren't drawn from the surface.
+ *
+ * Walks outward from the camera's section, breadth first. A step from one section into the next is only taken when
+ * the face it came in through connects to the face it goes out of (see {@link SectionConnectivity}),
+ * when the next section is in the frustum, and when it doesn't turn back towards the camera,
+ * which keeps the walk from wrapping around behind walls.
+ *
+ * Visible sections are also limited to the ones that {@link FrustumCuller} found.
+ * When the camera isn't inside of a loaded section, everything the frustum culler found is visible.
+ *
+ * Only used on the render thread.
+ */
+public class CaveCuller {
+
+    private static final int SECTION_HEIGHT = 16;
+    private static final Side[] SIDES = Side.values();
+    private static final int[] OPPOSITE = new int[SIDES.length];
+    static {
+        OPPOSITE[Side.TOP.ordinal()] = Side.BOTTOM.ordinal();
+        OPPOSITE[Side.BOTTOM.ordinal()] = Side.TOP.ordinal();
+        OPPOSITE[Side.WEST.ordinal()] = Side.EAST.ordinal();
+        OPPOSITE[Side.EAST.ordinal()] = Side.WEST.ordinal();
+        OPPOSITE[Side.NORTH.ordinal()] = Side.SOUTH.ordinal();
+        OPPOSITE[Side.SOUTH.ordinal()] = Side.NORTH.ordinal();
+    }
+    /**
+     * Face a walk starts from, connected to every face
+     */
+    private static final int NO_FACE = 7;
+
+    /**
+     * Visible sections of each chunk, bit n covering y from n*16 to n*16+15
+     */
+    private final ObjectIntMap<IChunk> visibleSections = new ObjectIntMap<>();
+    /**
+     * Sections to visit next. Each entry in the data is the section, the face it was entered through and the directions taken to get there.
+     */
+    private final Array<IChunk> queueChunks = new Array<>(false, 256);
+    private final IntArray queueData = new IntArray(false, 256);
+    private boolean culled;
+    private FrustumCuller frustumCuller;
+
+    /**
+     * Work out what's visible and drop chunks that have nothing visible from the list
+     *
+     * @param frustumCuller Culler that found the chunks
+     * @param chunks Chunks in the frustum, filtered in place
+     */
+    public void cull(IWorld world, Vector3 cameraPosition, Frustum frustum, FrustumCuller frustumCuller, List<IChunk> chunks) {
+        this.frustumCuller = frustumCuller;
+        visibleSections.clear();
+        int sections = (world.getHeight() + SECTION_HEIGHT - 1) / SECTION_HEIGHT;
+        int cameraSection = (int) Math.floor(cameraPosition.y / SECTION_HEIGHT);
+        IChunk cameraChunk = world.getChunk((int) Math.floor(cameraPosition.x), (int) Math.floor(cameraPosition.z));
+        culled = cameraChunk != null && cameraSection >= 0 && cameraSection < sections;
+        if (!culled)
+            return;
+
+        int chunkSize = world.getChunkSize();
+        float halfWidth = chunkSize / 2f;
+        float halfHeight = SECTION_HEIGHT / 2f;
+        visit(cameraChunk, cameraSection, NO_FACE, 0);
+        for (int head = 0; head < queueChunks.size; head++) {
+            IChunk chunk = queueChunks.get(head);
+            int data = queueData.get(head);
+            int section = data & 0xFF;
+            int enteredFrom = data >> 8 & 0xF;
+            int directions = data >> 12;
+            long connections = chunk.getSectionConnections(section);
+
+            for (int side = 0; side < SIDES.length; side++) {
+                if ((directions & 1 << OPPOSITE[side]) != 0)
+                    continue; // Heading back towards the camera
+                if (enteredFrom != NO_FACE && !SectionConnectivity.isConnected(connections, enteredFrom, side))
+                    continue;
+
+                IChunk next = chunk;
+                int nextSection = section;
+                switch (SIDES[side]) {
+                    case TOP: nextSection++; break;
+                    case BOTTOM: nextSection--; break;
+                    case WEST: next = chunk.getNeighbor(-1, 0); break;
+                    case EAST: next = chunk.getNeighbor(1, 0); break;
+                    case NORTH: next = chunk.getNeighbor(0, 1); break;
+                    case SOUTH: next = chunk.getNeighbor(0, -1); break;
+                }
+                if (next == null || nextSection < 0 || nextSection >= sections)
+                    continue;
+                if ((visibleSections.get(next, 0) & 1 << nextSection) != 0)
+                    continue;
+                float midX = next.getStartPosition().x + halfWidth;
+                float midY = nextSection * SECTION_HEIGHT + halfHeight;
+                float midZ = next.getStartPosition().z + halfWidth;
+                if (!frustum.boundsInFrustum(midX, midY, midZ, halfWidth, halfHeight, halfWidth))
+                    continue;
+                visit(next, nextSection, OPPOSITE[side], directions | 1 << side);
+            }
+        }
+        queueChunks.clear();
+        queueData.clear();
+
+        chunks.removeIf(chunk -> getVisibleSections(chunk) == 0);
+    }
+
+    private void visit(IChunk chunk, int section, int enteredFrom, int directions) {
+        visibleSections.put(chunk, visibleSections.get(chunk, 0) | 1 << section);
+        queueChunks.add(chunk);
+        queueData.add(section | enteredFrom << 8 | directions << 12);
+    }
+
+    /**
+     * @return Bit mask of the chunk's sections that are visible, bit n covering y from n*16 to n*16+15
+     */
+    public int getVisibleSections(IChunk chunk) {
+        int inFrustum = frustumCuller.getVisibleSections(chunk);
+        if (!culled)
+            return inFrustum;
+        return visibleSections.get(chunk, 0) & inFrustum;
+    }
+
+}
@@ -0,0 +1,323 @@
+package sx.lambda.voxel.client.render;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.LongMap;
+import sx.lambda.voxel.block.NormalBlockRenderer;
+import sx.lambda.voxel.block.RenderLayer;
+import sx.lambda.voxel.client.render.meshing.QuadIndexBuffer;
+import sx.lambda.voxel.client.render.meshing.VertexWriter;
+import sx.lambda.voxel.util.Vec3i;
+
+/**
+ * Keeps chunk geometry on the GPU and draws it with a shader made for it.
+ *
+ * Chunks are grouped into regions of {@link #REGION_SIZE}x{@link #REGION_SIZE}. Each region packs the geometry of all its chunks
+ * into a {@link RegionBuffer} per render layer. Opaque and cutout chunks are batched, each chunk queues the sections that are visible
+ * and they're drawn together when the layer is done, so a region draws in a handful of calls.
+ * Translucent geometry has to be drawn back to front, so it's drawn a chunk at a time instead.
+ *
+ * Everything draws have in common is set up once per pass in {@link #begin(Camera, boolean)} and {@link #setLayer(RenderLayer)}:
+ * the shader, the camera, the block atlas, the attribute arrays and the quad indices every draw shares.
+ * A draw after that is a buffer bind, the attribute pointers, the region's origin and one draw call.
+ *
+ * Draw the opaque layer first, then cutout, then translucent.
+ * Uses the GL state directly, so it shouldn't be used between a ModelBatch's begin and end.
+ */
+public class ChunkRenderer implements Disposable {
+
+    /**
+     * Width of a region, in chunks. Has to match chunk.vert.glsl, and a region can't hold more than 256 chunks.
+     */
+    public static final int REGION_SIZE = 4;
+    private static final VertexAttributes ATTRIBUTES = VertexWriter.ATTRIBUTES;
+    private static final int BYTES_PER_QUAD = VertexWriter.VERTICES_PER_QUAD * ATTRIBUTES.vertexSize;
+    /**
+     * Alpha test value that lets every fragment through
+     */
+    private static final float NO_ALPHA_TEST = -1;
+    private static final float CUTOUT_ALPHA_TEST = 0.25f;
+
+    private final ShaderProgram shader;
+    private final ShaderProgram wireframeShader;
+    private final int[] attributeLocations = new int[ATTRIBUTES.size()];
+    private final LongMap<Region> regions = new LongMap<>();
+    /**
+     * Region buffers with draws queued since the last flush
+     */
+    private final Array<RegionBuffer> queued = new Array<>();
+    /**
+     * Whether the current layer queues draws instead of drawing right away
+     */
+    private boolean batching;
+
+    private ShaderProgram current;
+    private int primitiveType;
+    private int originLocation, alphaTestLocation;
+    private boolean drawing;
+
+    /**
+     * Must be created on the GL thread
+     */
+    public ChunkRenderer() {
+        shader = load("shaders/chunk.frag.glsl");
+        wireframeShader = load("shaders/gdx/wiremesh.frag.glsl");
+    }
+
+    private static ShaderProgram load(String fragmentShader) {
+        ShaderProgram program = new ShaderProgram(Gdx.files.internal("shaders/chunk.vert.glsl"), Gdx.files.internal(fragmentShader));
+        if (!program.isCompiled())
+            throw new GdxRuntimeException("Couldn't compile chunk shader " + fragmentShader + ": " + program.getLog());
+        return program;
+    }
+
+    /**
+     * Start drawing chunks, with the opaque layer's state
+     *
+     * @param wireframe Whether to draw lines with the wireframe shader instead of textured triangles
+     */
+    public void begin(Camera camera, boolean wireframe) {
+        if (drawing)
+            throw new IllegalStateException("Already drawing, call end() first");
+        drawing = true;
+        current = wireframe ? wireframeShader : shader;
+        primitiveType = wireframe ? GL20.GL_LINES : GL20.GL_TRIANGLES;
+
+        Gdx.gl.glEnable(GL20.GL_DEPTH_TEST);
+        Gdx.gl.glDepthFunc(GL20.GL_LEQUAL);
+        Gdx.gl.glEnable(GL20.GL_CULL_FACE);
+        Gdx.gl.glCullFace(GL20.GL_BACK);
+
+        current.begin();
+        current.setUniformMatrix("u_projViewTrans", camera.combined);
+        // The wireframe shader doesn't sample anything, so these can be missing
+        int textureLocation = current.fetchUniformLocation("u_texture", false);
+        if (textureLocation >= 0) {
+            NormalBlockRenderer.getBlockMap().bind(0);
+            current.setUniformi(textureLocation, 0);
+        }
+        originLocation = current.fetchUniformLocation("u_origin", false);
+        alphaTestLocation = current.fetchUniformLocation("u_alphaTest", false);
+
+        for (int i = 0; i < ATTRIBUTES.size(); i++) {
+            int location = current.getAttributeLocation(ATTRIBUTES.get(i).alias);
+            attributeLocations[i] = location;
+            if (location >= 0) {
+                current.enableVertexAttribute(location);
+            }
+        }
+        QuadIndexBuffer.bind();
+
+        setLayer(RenderLayer.OPAQUE);
+    }
+
+    /**
+     * Switch to the state for drawing a render layer. Layers should be drawn in order, opaque, cutout, then translucent.
+     */
+    public void setLayer(RenderLayer layer) {
+        flush();
+        batching = layer != RenderLayer.TRANSLUCENT;
+        switch (layer) {
+            case TRANSLUCENT:
+                // Still alpha tested, so fully clear parts don't cover what's behind them
+                Gdx.gl.glEnable(GL20.GL_BLEND);
+                Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+                Gdx.gl.glDepthMask(false);
+                setAlphaTest(CUTOUT_ALPHA_TEST);
+                break;
+            case CUTOUT:
+                Gdx.gl.glDisable(GL20.GL_BLEND);
+                Gdx.gl.glDepthMask(true);
+                setAlphaTest(CUTOUT_ALPHA_TEST);
+                break;
+            default:
+                Gdx.gl.glDisable(GL20.GL_BLEND);
+                Gdx.gl.glDepthMask(true);
+                setAlphaTest(NO_ALPHA_TEST);
+                break;
+        }
+    }
+
+    private void setAlphaTest(float alphaTest) {
+        if (alphaTestLocation >= 0) {
+            current.setUniformf(alphaTestLocation, alphaTest);
+        }
+    }
+
+    /**
+     * Get which chunk of its region a chunk is, which is stored in its vertices
+     * @param startX X position of the chunk's first block
+     * @param startZ Z position of the chunk's first block
+     */
+    public static int getRegionSlot(int startX, int startZ, int chunkSize) {
+        int chunkX = Math.floorDiv(startX, chunkSize);
+        int chunkZ = Math.floorDiv(startZ, chunkSize);
+        return (chunkX & REGION_SIZE - 1) + (chunkZ & REGION_SIZE - 1) * REGION_SIZE;
+    }
+
+    /**
+     * Put a chunk's geometry for a render layer on the GPU, replacing what it had there before. Must be called on the GL thread.
+     *
+     * The chunk's old slice is reused when the new geometry fits in it, so there's no allocation for chunks that don't grow.
+     *
+     * @param chunkStart Start position of the chunk
+     * @param previous Slice returned by the chunk's last upload for this layer, or null
+     * @param sectionStarts Quad each 16-high section's vertices start at, with the total at the end, so sections can be drawn on their own
+     * @return Slice to pass back in for the next upload and to draw the chunk with, or null if there wasn't any geometry
+     */
+    public RegionBuffer.Slice upload(Vec3i chunkStart, int chunkSize, RenderLayer layer, RegionBuffer.Slice previous,
+                                     VertexWriter vertices, int[] sectionStarts) {
+        RegionBuffer buffer;
+        if (previous != null) {
+            buffer = previous.getOwner();
+        } else {
+            if (vertices.getQuadCount() == 0)
+                return null;
+            buffer = getRegion(chunkStart, chunkSize).layers[layer.ordinal()];
+        }
+        RegionBuffer.Slice slice = buffer.write(previous, vertices, sectionStarts);
+        if (slice == null) {
+            disposeIfEmpty(buffer);
+        }
+        return slice;
+    }
+
+    /**
+     * Remove a chunk's geometry. Must be called on the GL thread.
+     */
+    public void free(RegionBuffer.Slice slice) {
+        RegionBuffer buffer = slice.getOwner();
+        buffer.free(slice);
+        disposeIfEmpty(buffer);
+    }
+
+    private Region getRegion(Vec3i chunkStart, int chunkSize) {
+        int regionWidth = chunkSize * REGION_SIZE;
+        int regionX = Math.floorDiv(chunkStart.x, regionWidth);
+        int regionZ = Math.floorDiv(chunkStart.z, regionWidth);
+        long key = (long) regionX << 32 | (regionZ & 0xFFFFFFFFL);
+        Region region = regions.get(key);
+        if (region == null) {
+            region = new Region(key, regionX * regionWidth, regionZ * regionWidth);
+            regions.put(key, region);
+        }
+        return region;
+    }
+
+    private void disposeIfEmpty(RegionBuffer buffer) {
+        if (!buffer.isEmpty())
+            return;
+        Region region = regions.get(buffer.regionKey);
+        if (region == null)
+            return;
+        for (RegionBuffer layer : region.layers) {
+            if (!layer.isEmpty())
+                return;
+        }
+        regions.remove(region.key);
+    }
+
+    /**
+     * Draw sections of a chunk's slice. For the opaque and cutout layers this only queues the draw, see {@link #flush()}.
+     * @param sections Bit mask of the sections to draw, bit n covering y from n*16 to n*16+15
+     */
+    public void render(RegionBuffer.Slice slice, int sections) {
+        RegionBuffer buffer = slice.getOwner();
+        if (buffer.queue(slice, sections)) {
+            queued.add(buffer);
+        }
+        if (!batching) {
+            flush();
+        }
+    }
+
+    /**
+     * Draw everything that's been queued. Called when the layer changes and when drawing ends, so it usually doesn't need to be called directly.
+     */
+    public void flush() {
+        for (RegionBuffer buffer : queued) {
+            buffer.flush(this);
+        }
+        queued.clear();
+    }
+
+    /**
+     * Draw quads out of a region's vertex buffer
+     */
+    void draw(RegionBuffer region, int buffer, int firstQuad, int quads) {
+        if (quads == 0)
+            return;
+
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, buffer);
+        // The shared indices always start at zero, so the attributes are pointed at the first quad instead
+        int offset = firstQuad * BYTES_PER_QUAD;
+        for (int i = 0; i < ATTRIBUTES.size(); i++) {
+            int location = attributeLocations[i];
+            if (location < 0)
+                continue;
+            VertexAttribute attribute = ATTRIBUTES.get(i);
+            current.setVertexAttribute(location, attribute.numComponents, attribute.type, attribute.normalized,
+                    ATTRIBUTES.vertexSize, offset + attribute.offset);
+        }
+        if (originLocation >= 0) {
+            current.setUniformf(originLocation, region.originX, 0, region.originZ);
+        }
+        Gdx.gl.glDrawElements(primitiveType, quads * QuadIndexBuffer.INDICES_PER_QUAD, GL20.GL_UNSIGNED_SHORT, 0);
+    }
+
+    /**
+     * Finish drawing chunks, leaving the GL state the way libGDX's render context expects it
+     */
+    public void end() {
+        if (!drawing)
+            throw new IllegalStateException("Not drawing, call begin() first");
+        flush();
+        drawing = false;
+
+        for (int location : attributeLocations) {
+            if (location >= 0) {
+                current.disableVertexAttribute(location);
+            }
+        }
+        QuadIndexBuffer.unbind();
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+        current.end();
+
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+        Gdx.gl.glDepthMask(true);
+        Gdx.gl.glDisable(GL20.GL_CULL_FACE);
+        Gdx.gl.glDisable(GL20.GL_DEPTH_TEST);
+    }
+
+    @Override
+    public void dispose() {
+        for (Region region : regions.values()) {
+            for (RegionBuffer layer : region.layers) {
+                layer.dispose();
+            }
+        }
+        regions.clear();
+        shader.dispose();
+        wireframeShader.dispose();
+    }
+
+    private static class Region {
+        private final long key;
+        private final RegionBuffer[] layers = new RegionBuffer[RenderLayer.values().length];
+
+        Region(long key, int originX, int originZ) {
+            this.key = key;
+            for (int i = 0; i < layers.length; i++) {
+                layers[i] = new RegionBuffer(key, originX, originZ);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package sx.lambda.voxel.client.render;
+
+import com.badlogic.gdx.math.Frustum;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import sx.lambda.voxel.client.render.meshing.SectionConnectivity;
+import sx.lambda.voxel.world.IWorld;
+import sx.lambda.voxel.world.chunk.IChunk;
+
+import java.util.List;
+
+/**
+ * Finds the chunks and sections in the view frustum.
+ *
+ * Walks the grid of chunks around the camera a region at a time ({@link ChunkRenderer#REGION_SIZE} chunks across),
+ * so whole regions outside of the frustum are skipped with a single test.
+ * Chunks in the regions that are left are tested with a box from their lowest block to their highest,
+ * and then each section with the box around the blocks in it, see {@link IChunk#getSectionBounds(int)}.
+ *
+ * Only used on the render thread.
+ */
+public class FrustumCuller {
+
+    private static final int SECTION_HEIGHT = 16;
+
+    /**
+     * Sections of each chunk in the frustum, bit n covering y from n*16 to n*16+15
+     */
+    private final ObjectIntMap<IChunk> visibleSections = new ObjectIntMap<>();
+
+    /**
+     * Find the chunks in the frustum
+     *
+     * @param range How far out from the camera to look for chunks, in chunks
+     * @param chunks List to put chunks in the frustum into, cleared first
+     */
+    public void cull(IWorld world, Vector3 cameraPosition, int range, Frustum frustum, List<IChunk> chunks) {
+        visibleSections.clear();
+        chunks.clear();
+        int chunkSize = world.getChunkSize();
+        int sections = (world.getHeight() + SECTION_HEIGHT - 1) / SECTION_HEIGHT;
+        int regionWidth = chunkSize * ChunkRenderer.REGION_SIZE;
+        float halfRegion = regionWidth / 2f;
+        float halfHeight = world.getHeight() / 2f;
+
+        int cameraChunkX = Math.floorDiv((int) Math.floor(cameraPosition.x), chunkSize);
+        int cameraChunkZ = Math.floorDiv((int) Math.floor(cameraPosition.z), chunkSize);
+        int firstRegionX = Math.floorDiv(cameraChunkX - range, ChunkRenderer.REGION_SIZE);
+        int lastRegionX = Math.floorDiv(cameraChunkX + range, ChunkRenderer.REGION_SIZE);
+        int firstRegionZ = Math.floorDiv(cameraChunkZ - range, ChunkRenderer.REGION_SIZE);
+        int lastRegionZ = Math.floorDiv(cameraChunkZ + range, ChunkRenderer.REGION_SIZE);
+        for (int regionX = firstRegionX; regionX <= lastRegionX; regionX++) {
+            for (int regionZ = firstRegionZ; regionZ <= lastRegionZ; regionZ++) {
+                if (!frustum.boundsInFrustum(regionX * regionWidth + halfRegion, halfHeight, regionZ * regionWidth + halfRegion,
+                        halfRegion, halfHeight, halfRegion))
+                    continue;
+
+                for (int i = 0; i < ChunkRenderer.REGION_SIZE * ChunkRenderer.REGION_SIZE; i++) {
+                    int chunkX = regionX * ChunkRenderer.REGION_SIZE + i % ChunkRenderer.REGION_SIZE;
+                    int chunkZ = regionZ * ChunkRenderer.REGION_SIZE + i / ChunkRenderer.REGION_SIZE;
+                    if (Math.abs(chunkX - cameraChunkX) > range || Math.abs(chunkZ - cameraChunkZ) > range)
+                        continue;
+                    IChunk chunk = world.getChunk(chunkX * chunkSize, chunkZ * chunkSize);
+                    if (chunk == null)
+                        continue;
+                    int visible = cullSections(chunk, sections, frustum);
+                    if (visible != 0) {
+                        visibleSections.put(chunk, visible);
+                        chunks.add(chunk);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Bit mask of the chunk's sections that are in the frustum
+     */
+    private int cullSections(IChunk chunk, int sections, Frustum frustum) {
+        int startX = chunk.getStartPosition().x;
+        int startZ = chunk.getStartPosition().z;
+        float halfWidth = chunk.getWorld().getChunkSize() / 2f;
+
+        // Whole column first, from the lowest block in any section to the highest
+        int lowest = 0;
+        while (lowest < sections && chunk.getSectionBounds(lowest) == SectionConnectivity.EMPTY_BOUNDS) {
+            lowest++;
+        }
+        if (lowest == sections)
+            return 0;
+        int highest = sections - 1;
+        while (chunk.getSectionBounds(highest) == SectionConnectivity.EMPTY_BOUNDS) {
+            highest--;
+        }
+        float bottom = lowest * SECTION_HEIGHT + SectionConnectivity.getBound(chunk.getSectionBounds(lowest), 1);
+        float top = highest * SECTION_HEIGHT + SectionConnectivity.getBound(chunk.getSectionBounds(highest), 4);
+        if (!frustum.boundsInFrustum(startX + halfWidth, (bottom + top) / 2, startZ + halfWidth, halfWidth, (top - bottom) / 2, halfWidth))
+            return 0;
+
+        int visible = 0;
+        for (int section = lowest; section <= highest; section++) {
+            int bounds = chunk.getSectionBounds(section);
+            if (bounds == SectionConnectivity.EMPTY_BOUNDS)
+                continue;
+            float minX = startX + SectionConnectivity.getBound(bounds, 0);
+            float minY = section * SECTION_HEIGHT + SectionConnectivity.getBound(bounds, 1);
+            float minZ = startZ + SectionConnectivity.getBound(bounds, 2);
+            float maxX = startX + SectionConnectivity.getBound(bounds, 3);
+            float maxY = section * SECTION_HEIGHT + SectionConnectivity.getBound(bounds, 4);
+            float maxZ = startZ + SectionConnectivity.getBound(bounds, 5);
+            if (frustum.boundsInFrustum((minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2,
+                    (maxX - minX) / 2, (maxY - minY) / 2, (maxZ - minZ) / 2)) {
+                visible |= 1 << section;
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * @return Bit mask of the chunk's sections that are in the frustum, bit n covering y from n*16 to n*16+15
+     */
+    public int getVisibleSections(IChunk chunk) {
+        return visibleSections.get(chunk, 0);
+    }
+
+}
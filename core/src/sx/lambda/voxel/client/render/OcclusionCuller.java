@@ -0,0 +1,294 @@
+package sx.lambda.voxel.client.render;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import sx.lambda.voxel.world.IWorld;
+import sx.lambda.voxel.world.chunk.IChunk;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Skips chunks hidden behind terrain, by testing them against a small depth buffer drawn on the CPU.
+ *
+ * Occluders are boxes covering runs of layers that are opaque all the way across a chunk (see {@link IChunk#getOpaqueLayers(int)}),
+ * taken from the chunks around the camera. They're drawn into the depth buffer on a worker thread while the render thread gets the frame ready.
+ * Each chunk's box is then tested against the buffer, and chunks that are behind occluders everywhere they cover are dropped.
+ *
+ * Occluders are only ever smaller than what they stand for, so nothing that can be seen gets dropped.
+ * Occluders cover the pixels whose centers they're over, so they can reach up to half a pixel past their real edges.
+ * To make up for it, each pixel keeps the farthest depth its occluder reaches inside of it, and chunks are tested
+ * against one more pixel all around their box.
+ * Anything crossing the near plane is left out as an occluder and always counts as visible.
+ *
+ * Doesn't use the GPU, so it can be run headless.
+ */
+public class OcclusionCuller implements Disposable {
+
+    public static final int WIDTH = 256, HEIGHT = 128;
+    private static final int SECTION_HEIGHT = 16;
+    /**
+     * How far from the camera chunks are used as occluders, in chunks
+     */
+    private static final int OCCLUDER_RANGE = 4;
+    /**
+     * Corners of a box, as offsets into its min and max coordinates
+     */
+    private static final int[][] CORNERS = {
+            {0, 1, 2}, {3, 1, 2}, {0, 4, 2}, {3, 4, 2},
+            {0, 1, 5}, {3, 1, 5}, {0, 4, 5}, {3, 4, 5}};
+    /**
+     * Triangles of a box, two per face, as indices into {@link #CORNERS}
+     */
+    private static final int[] TRIANGLES = {
+            0, 1, 3, 0, 3, 2, // Front
+            4, 6, 7, 4, 7, 5, // Back
+            0, 2, 6, 0, 6, 4, // Left
+            1, 5, 7, 1, 7, 3, // Right
+            0, 4, 5, 0, 5, 1, // Bottom
+            2, 3, 7, 2, 7, 6}; // Top
+
+    private final float[] depth = new float[WIDTH * HEIGHT];
+    private final Matrix4 viewProjection = new Matrix4();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Occlusion Worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Chunks to take occluders from, only touched by the worker while it's drawing
+     */
+    private final Array<IChunk> occluders = new Array<>();
+    /**
+     * Box being drawn or tested, min x, y, z then max x, y, z
+     */
+    private final float[] box = new float[6];
+    /**
+     * Screen x, y and depth of each corner of the box being drawn or tested
+     */
+    private final float[] projected = new float[CORNERS.length * 3];
+    private final FloatArray runs = new FloatArray();
+    private float near;
+    private int sections;
+    private int chunkSize;
+    private Future<?> drawing;
+
+    /**
+     * Start drawing occluders for a frame on the worker thread. Must be followed by {@link #cull(List, CaveCuller)}.
+     */
+    public void begin(IWorld world, Camera camera) {
+        if (drawing != null)
+            throw new IllegalStateException("Already drawing, call cull() first");
+        viewProjection.set(camera.combined);
+        near = camera.near;
+        chunkSize = world.getChunkSize();
+        sections = (world.getHeight() + SECTION_HEIGHT - 1) / SECTION_HEIGHT;
+
+        occluders.clear();
+        int range = OCCLUDER_RANGE * chunkSize;
+        for (int x = -range; x <= range; x += chunkSize) {
+            for (int z = -range; z <= range; z += chunkSize) {
+                IChunk chunk = world.getChunk((int) Math.floor(camera.position.x) + x, (int) Math.floor(camera.position.z) + z);
+                if (chunk != null) {
+                    occluders.add(chunk);
+                }
+            }
+        }
+        drawing = worker.submit(this::drawOccluders);
+    }
+
+    /**
+     * Wait for the occluders to finish drawing, then drop the chunks that are hidden behind them
+     *
+     * @param chunks Chunks to test, filtered in place
+     * @param caveCuller Culler that the chunks already went through, the only sections tested are the visible ones
+     */
+    public void cull(List<IChunk> chunks, CaveCuller caveCuller) {
+        if (drawing == null)
+            throw new IllegalStateException("Not drawing, call begin() first");
+        try {
+            drawing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            drawing = null;
+        }
+
+        chunks.removeIf(chunk -> !isVisible(chunk, caveCuller.getVisibleSections(chunk)));
+    }
+
+    private boolean isVisible(IChunk chunk, int visibleSections) {
+        if (visibleSections == 0)
+            return false;
+        int lowest = Integer.numberOfTrailingZeros(visibleSections);
+        int highest = Math.min(31 - Integer.numberOfLeadingZeros(visibleSections), sections - 1);
+        box[0] = chunk.getStartPosition().x;
+        box[1] = lowest * SECTION_HEIGHT;
+        box[2] = chunk.getStartPosition().z;
+        box[3] = box[0] + chunkSize;
+        box[4] = Math.min((highest + 1) * SECTION_HEIGHT, chunk.getHighestPoint() + 1);
+        box[5] = box[2] + chunkSize;
+        if (box[4] <= box[1]) {
+            box[4] = box[1] + 1;
+        }
+        if (!project())
+            return true;
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        float nearest = Float.MAX_VALUE;
+        for (int i = 0; i < projected.length; i += 3) {
+            minX = Math.min(minX, projected[i]);
+            maxX = Math.max(maxX, projected[i]);
+            minY = Math.min(minY, projected[i + 1]);
+            maxY = Math.max(maxY, projected[i + 1]);
+            nearest = Math.min(nearest, projected[i + 2]);
+        }
+        int x1 = Math.max(0, (int) Math.floor(minX));
+        int x2 = Math.min(WIDTH - 1, (int) Math.ceil(maxX) - 1);
+        int y1 = Math.max(0, (int) Math.floor(minY));
+        int y2 = Math.min(HEIGHT - 1, (int) Math.ceil(maxY) - 1);
+        if (x1 > x2 || y1 > y2)
+            return true; // Off of the buffer, leave it to the frustum
+        // Pixels next to the box may be covered by an occluder that doesn't quite reach over the box
+        x1 = Math.max(0, x1 - 1);
+        x2 = Math.min(WIDTH - 1, x2 + 1);
+        y1 = Math.max(0, y1 - 1);
+        y2 = Math.min(HEIGHT - 1, y2 + 1);
+
+        for (int y = y1; y <= y2; y++) {
+            int row = y * WIDTH;
+            for (int x = x1; x <= x2; x++) {
+                if (depth[row + x] >= nearest)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private void drawOccluders() {
+        Arrays.fill(depth, 1);
+        for (IChunk chunk : occluders) {
+            findOpaqueRuns(chunk);
+            for (int i = 0; i < runs.size; i += 2) {
+                box[0] = chunk.getStartPosition().x;
+                box[1] = runs.get(i);
+                box[2] = chunk.getStartPosition().z;
+                box[3] = box[0] + chunkSize;
+                box[4] = runs.get(i + 1);
+                box[5] = box[2] + chunkSize;
+                if (project()) {
+                    for (int t = 0; t < TRIANGLES.length; t += 3) {
+                        triangle(TRIANGLES[t] * 3, TRIANGLES[t + 1] * 3, TRIANGLES[t + 2] * 3);
+                    }
+                }
+            }
+        }
+        occluders.clear();
+    }
+
+    /**
+     * Find the runs of layers in a chunk that are opaque all the way across, as pairs of bottom and top heights
+     */
+    private void findOpaqueRuns(IChunk chunk) {
+        runs.clear();
+        int runStart = -1;
+        for (int section = 0; section < sections; section++) {
+            int layers = chunk.getOpaqueLayers(section);
+            if (runStart < 0 && layers == 0)
+                continue; // Nothing starts here
+            for (int layer = 0; layer < SECTION_HEIGHT; layer++) {
+                boolean opaque = (layers & 1 << layer) != 0;
+                int y = section * SECTION_HEIGHT + layer;
+                if (opaque && runStart < 0) {
+                    runStart = y;
+                } else if (!opaque && runStart >= 0) {
+                    runs.add(runStart);
+                    runs.add(y);
+                    runStart = -1;
+                }
+            }
+        }
+        if (runStart >= 0) {
+            runs.add(runStart);
+            runs.add(sections * SECTION_HEIGHT);
+        }
+    }
+
+    /**
+     * Project the corners of {@link #box} onto the buffer
+     * @return False if any corner is behind the near plane
+     */
+    private boolean project() {
+        float[] m = viewProjection.val;
+        for (int i = 0; i < CORNERS.length; i++) {
+            float x = box[CORNERS[i][0]], y = box[CORNERS[i][1]], z = box[CORNERS[i][2]];
+            float w = m[Matrix4.M30] * x + m[Matrix4.M31] * y + m[Matrix4.M32] * z + m[Matrix4.M33];
+            if (w < near)
+                return false;
+            float clipX = m[Matrix4.M00] * x + m[Matrix4.M01] * y + m[Matrix4.M02] * z + m[Matrix4.M03];
+            float clipY = m[Matrix4.M10] * x + m[Matrix4.M11] * y + m[Matrix4.M12] * z + m[Matrix4.M13];
+            float clipZ = m[Matrix4.M20] * x + m[Matrix4.M21] * y + m[Matrix4.M22] * z + m[Matrix4.M23];
+            projected[i * 3] = (clipX / w * 0.5f + 0.5f) * WIDTH;
+            projected[i * 3 + 1] = (clipY / w * 0.5f + 0.5f) * HEIGHT;
+            projected[i * 3 + 2] = clipZ / w;
+        }
+        return true;
+    }
+
+    /**
+     * Draw a triangle of projected corners into the depth buffer, keeping the nearest depth at each pixel.
+     * The depth written is the farthest the triangle's plane gets anywhere in the pixel, not the depth at its center.
+     */
+    private void triangle(int a, int b, int c) {
+        float ax = projected[a], ay = projected[a + 1], az = projected[a + 2];
+        float bx = projected[b], by = projected[b + 1], bz = projected[b + 2];
+        float cx = projected[c], cy = projected[c + 1], cz = projected[c + 2];
+        float area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+        if (Math.abs(area) < 1e-6f)
+            return;
+
+        int x1 = Math.max(0, (int) Math.floor(Math.min(ax, Math.min(bx, cx))));
+        int x2 = Math.min(WIDTH - 1, (int) Math.ceil(Math.max(ax, Math.max(bx, cx))));
+        int y1 = Math.max(0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+        int y2 = Math.min(HEIGHT - 1, (int) Math.ceil(Math.max(ay, Math.max(by, cy))));
+        float inverseArea = 1 / area;
+        // How far the depth can get from the center's within the pixel
+        float dzdx = (-(cy - by) * (az - cz) - (ay - cy) * (bz - cz)) * inverseArea;
+        float dzdy = ((cx - bx) * (az - cz) + (ax - cx) * (bz - cz)) * inverseArea;
+        float spread = 0.5f * (Math.abs(dzdx) + Math.abs(dzdy));
+        for (int y = y1; y <= y2; y++) {
+            float py = y + 0.5f;
+            int row = y * WIDTH;
+            for (int x = x1; x <= x2; x++) {
+                float px = x + 0.5f;
+                // Barycentric weights, only pixels whose centers are inside of the triangle are covered
+                float wa = ((cx - bx) * (py - by) - (cy - by) * (px - bx)) * inverseArea;
+                float wb = ((ax - cx) * (py - cy) - (ay - cy) * (px - cx)) * inverseArea;
+                float wc = 1 - wa - wb;
+                if (wa < 0 || wb < 0 || wc < 0)
+                    continue;
+                float z = wa * az + wb * bz + wc * cz + spread;
+                if (z < depth[row + x]) {
+                    depth[row + x] = z;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        worker.shutdownNow();
+    }
+
+}
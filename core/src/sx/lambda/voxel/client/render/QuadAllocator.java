@@ -0,0 +1,85 @@
+package sx.lambda.voxel.client.render;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps track of the free space in a buffer of quads, placing new ranges first fit.
+ *
+ * Doesn't touch GL itself, see {@link RegionBuffer} for the buffers it's used with.
+ */
+class QuadAllocator {
+
+    final int capacity;
+    /**
+     * Free ranges, start to length. Neighboring ranges are always merged.
+     */
+    private final TreeMap<Integer, Integer> free = new TreeMap<>();
+
+    QuadAllocator(int capacity) {
+        this.capacity = capacity;
+        free.put(0, capacity);
+    }
+
+    /**
+     * @return Start of the space taken, or -1 if there wasn't enough room
+     */
+    int allocate(int quads) {
+        for (Map.Entry<Integer, Integer> range : free.entrySet()) {
+            if (range.getValue() >= quads) {
+                int start = range.getKey();
+                take(start, range.getValue(), quads);
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Take space starting at a position, if it's free
+     */
+    boolean extend(int start, int quads) {
+        Integer length = free.get(start);
+        if (length == null || length < quads)
+            return false;
+        take(start, length, quads);
+        return true;
+    }
+
+    private void take(int start, int length, int quads) {
+        free.remove(start);
+        if (length > quads) {
+            free.put(start + quads, length - quads);
+        }
+    }
+
+    void release(int start, int quads) {
+        if (quads == 0)
+            return;
+        int end = start + quads;
+        Map.Entry<Integer, Integer> before = free.lowerEntry(start);
+        if (before != null && before.getKey() + before.getValue() == start) {
+            start = before.getKey();
+            free.remove(start);
+        }
+        Integer after = free.remove(end);
+        if (after != null) {
+            end += after;
+        }
+        free.put(start, end - start);
+    }
+
+    /**
+     * @return True if everything from start to end is free
+     */
+    boolean isFree(int start, int end) {
+        Integer length = free.get(start);
+        return length != null && start + length >= end;
+    }
+
+    boolean isEmpty() {
+        Integer length = free.get(0);
+        return length != null && length == capacity;
+    }
+
+}
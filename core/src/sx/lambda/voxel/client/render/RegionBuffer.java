@@ -0,0 +1,294 @@
+package sx.lambda.voxel.client.render;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.LongArray;
+import sx.lambda.voxel.client.render.meshing.VertexWriter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Geometry for one render layer of every chunk in a region, packed together into a few large vertex buffers.
+ *
+ * Each chunk gets a slice of one of the region's pages. A page is a GL buffer of at most {@link VertexWriter#MAX_QUADS} quads,
+ * which is as many as one draw call can index with the shared quad indices.
+ * Chunks queue the parts of their slices that are visible, and flushing draws them with as few calls as it can,
+ * one per page when everything in the region is visible.
+ * Slices are placed first fit. A chunk that's remeshed keeps its slice when the new geometry fits,
+ * or grows into free space right after it when there is some.
+ *
+ * Freed space is zeroed. A zeroed quad has all four corners on the same point,
+ * so a draw can run straight over the gaps between slices without anything showing up there.
+ *
+ * Only used on the GL thread, through {@link ChunkRenderer}.
+ */
+public class RegionBuffer {
+
+    private static final int BYTES_PER_QUAD = VertexWriter.VERTICES_PER_QUAD * VertexWriter.ATTRIBUTES.vertexSize;
+    /**
+     * Smallest page made, in quads. Pages get bigger as the region fills up.
+     */
+    private static final int MIN_PAGE_QUADS = 1024;
+    /**
+     * Zeroes to write over freed space, big enough for a whole page
+     */
+    private static ByteBuffer zeroes;
+
+    /**
+     * Key of the region in the renderer's map
+     */
+    final long regionKey;
+    /**
+     * World position of the region's first block, that vertex positions are relative to
+     */
+    final int originX, originZ;
+    private final Array<Page> pages = new Array<>();
+    /**
+     * Quads in all of the slices
+     */
+    private int usedQuads;
+    /**
+     * Whether any page has queued ranges
+     */
+    private boolean queued;
+
+    RegionBuffer(long regionKey, int originX, int originZ) {
+        this.regionKey = regionKey;
+        this.originX = originX;
+        this.originZ = originZ;
+    }
+
+    /**
+     * Put a chunk's vertices in the region
+     * @param previous The chunk's slice from its last upload, or null if it doesn't have one
+     * @param sectionStarts Quad each section's vertices start at, with the total quad count at the end
+     * @return The chunk's slice, which may or may not be the previous one, or null if there weren't any vertices
+     */
+    Slice write(Slice previous, VertexWriter vertices, int[] sectionStarts) {
+        int quads = vertices.getQuadCount();
+        if (quads == 0) {
+            if (previous != null)
+                free(previous);
+            return null;
+        }
+
+        Slice slice = previous;
+        if (slice != null && !resize(slice, quads)) {
+            free(slice);
+            slice = null;
+        }
+        if (slice == null) {
+            slice = allocate(quads);
+        }
+        slice.sectionStarts = sectionStarts;
+
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, slice.page.handle);
+        Gdx.gl.glBufferSubData(GL20.GL_ARRAY_BUFFER, slice.start * BYTES_PER_QUAD, quads * BYTES_PER_QUAD, vertices.getData());
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+        return slice;
+    }
+
+    /**
+     * Try to change the size of a slice without moving it
+     */
+    private boolean resize(Slice slice, int quads) {
+        if (quads <= slice.quads) {
+            slice.page.release(slice.start + quads, slice.quads - quads);
+        } else if (!slice.page.extend(slice.start + slice.quads, quads - slice.quads)) {
+            return false;
+        }
+        usedQuads += quads - slice.quads;
+        slice.quads = quads;
+        return true;
+    }
+
+    private Slice allocate(int quads) {
+        if (quads > VertexWriter.MAX_QUADS)
+            throw new IllegalArgumentException("Can't fit " + quads + " quads in a page, the most one page holds is " + VertexWriter.MAX_QUADS);
+        for (Page page : pages) {
+            int start = page.allocate(quads);
+            if (start >= 0) {
+                usedQuads += quads;
+                return new Slice(this, page, start, quads);
+            }
+        }
+
+        // Size new pages after what the region already holds, so busy regions end up with a few big pages instead of many small ones
+        int wanted = Math.max(quads, Math.max(MIN_PAGE_QUADS, usedQuads));
+        int capacity = Math.min(VertexWriter.MAX_QUADS, Integer.highestOneBit(wanted - 1) << 1);
+        Page page = new Page(capacity);
+        pages.add(page);
+        usedQuads += quads;
+        return new Slice(this, page, page.allocate(quads), quads);
+    }
+
+    void free(Slice slice) {
+        if (slice.owner != this)
+            throw new IllegalArgumentException("Slice belongs to another region");
+        slice.page.release(slice.start, slice.quads);
+        usedQuads -= slice.quads;
+        slice.quads = 0;
+        if (slice.page.isEmpty()) {
+            pages.removeValue(slice.page, true);
+            slice.page.dispose();
+        }
+    }
+
+    boolean isEmpty() {
+        return pages.size == 0;
+    }
+
+    /**
+     * Queue the visible sections of a slice to be drawn on the next {@link #flush(ChunkRenderer)}
+     * @param sections Bit mask of the sections to draw
+     * @return True if this is the first thing queued since the last flush
+     */
+    boolean queue(Slice slice, int sections) {
+        boolean first = !queued;
+        int[] starts = slice.sectionStarts;
+        int runStart = -1;
+        for (int section = 0; section < starts.length - 1; section++) {
+            boolean empty = starts[section] == starts[section + 1];
+            if (empty)
+                continue; // Doesn't split runs, there's nothing in it to hide
+            if ((sections & 1 << section) != 0) {
+                if (runStart < 0)
+                    runStart = starts[section];
+            } else if (runStart >= 0) {
+                slice.page.queue(slice.start + runStart, slice.start + starts[section]);
+                queued = true;
+                runStart = -1;
+            }
+        }
+        if (runStart >= 0) {
+            slice.page.queue(slice.start + runStart, slice.start + starts[starts.length - 1]);
+            queued = true;
+        }
+        return first && queued;
+    }
+
+    /**
+     * Draw everything queued, joining ranges that are next to each other or only have free space between them
+     */
+    void flush(ChunkRenderer renderer) {
+        if (!queued)
+            return;
+        queued = false;
+        for (Page page : pages) {
+            LongArray ranges = page.queued;
+            if (ranges.size == 0)
+                continue;
+            ranges.sort();
+            int start = rangeStart(ranges.get(0));
+            int end = rangeEnd(ranges.get(0));
+            for (int i = 1; i < ranges.size; i++) {
+                int nextStart = rangeStart(ranges.get(i));
+                if (nextStart != end && !page.isFree(end, nextStart)) {
+                    renderer.draw(this, page.handle, start, end - start);
+                    start = nextStart;
+                }
+                end = rangeEnd(ranges.get(i));
+            }
+            renderer.draw(this, page.handle, start, end - start);
+            ranges.clear();
+        }
+    }
+
+    private static int rangeStart(long range) {
+        return (int) (range >>> 32);
+    }
+
+    private static int rangeEnd(long range) {
+        return (int) range;
+    }
+
+    void dispose() {
+        for (Page page : pages) {
+            page.dispose();
+        }
+        pages.clear();
+        usedQuads = 0;
+        queued = false;
+    }
+
+    private static void writeZeroes(int handle, int startQuad, int quads) {
+        if (zeroes == null) {
+            zeroes = BufferUtils.newByteBuffer(VertexWriter.MAX_QUADS * BYTES_PER_QUAD); // Direct buffers start out zeroed
+        }
+        ByteBuffer range = zeroes.duplicate();
+        range.limit(quads * BYTES_PER_QUAD);
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, handle);
+        Gdx.gl.glBufferSubData(GL20.GL_ARRAY_BUFFER, startQuad * BYTES_PER_QUAD, quads * BYTES_PER_QUAD, range);
+        Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * A chunk's part of a region
+     */
+    public static class Slice {
+        private final RegionBuffer owner;
+        private final Page page;
+        private final int start;
+        private int quads;
+        /**
+         * Quad each section starts at, relative to the slice, with the slice's size at the end
+         */
+        private int[] sectionStarts;
+
+        private Slice(RegionBuffer owner, Page page, int start, int quads) {
+            this.owner = owner;
+            this.page = page;
+            this.start = start;
+            this.quads = quads;
+        }
+
+        RegionBuffer getOwner() {
+            return owner;
+        }
+
+        public int getQuadCount() {
+            return quads;
+        }
+    }
+
+    /**
+     * One GL buffer and the free space in it, measured in quads
+     */
+    private static class Page extends QuadAllocator {
+        private final int handle;
+        /**
+         * Ranges to draw on the next flush, start in the high half and end in the low half so they sort by start
+         */
+        private final LongArray queued = new LongArray();
+
+        Page(int capacity) {
+            super(capacity);
+            this.handle = Gdx.gl.glGenBuffer();
+            Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, handle);
+            Gdx.gl.glBufferData(GL20.GL_ARRAY_BUFFER, capacity * BYTES_PER_QUAD, null, GL20.GL_DYNAMIC_DRAW);
+            Gdx.gl.glBindBuffer(GL20.GL_ARRAY_BUFFER, 0);
+        }
+
+        /**
+         * Free space, zeroing it so draws can run over it
+         */
+        @Override
+        void release(int start, int quads) {
+            if (quads == 0)
+                return;
+            writeZeroes(handle, start, quads);
+            super.release(start, quads);
+        }
+
+        void queue(int start, int end) {
+            queued.add((long) start << 32 | end);
+        }
+
+        void dispose() {
+            Gdx.gl.glDeleteBuffer(handle);
+        }
+    }
+
+}
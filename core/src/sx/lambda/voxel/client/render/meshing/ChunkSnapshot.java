@@ -0,0 +1,312 @@
+package sx.lambda.voxel.client.render.meshing;
+
+import sx.lambda.voxel.api.RadixAPI;
+import sx.lambda.voxel.block.Block;
+import sx.lambda.voxel.util.Vec3i;
+import sx.lambda.voxel.world.chunk.BlockStorage.CoordinatesOutOfBoundsException;
+import sx.lambda.voxel.world.chunk.IChunk;
+
+import java.util.Arrays;
+
+/**
+ * Copy of a range of layers in a chunk, along with a one block border taken from the neighboring chunks and the layers above and below.
+ *
+ * Meshing works entirely off of a snapshot, so it never reads the chunk while the network thread or lighting workers are changing it,
+ * and looking at a neighboring block is just an array offset no matter which chunk it's in.
+ *
+ * Coordinates are chunk-relative. X and Z go from -1 to chunkSize, Y from one below the captured range to one above it.
+ * Blocks in neighbor chunks that aren't loaded, and blocks outside of the world, are {@link #MISSING}.
+ *
+ * Snapshots are reused per thread, see {@link #capture(IChunk, int, int)}.
+ */
+public class ChunkSnapshot {
+
+    /**
+     * State for blocks that aren't available, either because their chunk isn't loaded or because they're outside of the world
+     */
+    public static final int MISSING = -1;
+
+    private static final int SECTION_HEIGHT = 16;
+    private static final ThreadLocal<ChunkSnapshot> SNAPSHOTS = new ThreadLocal<>();
+
+    private final int chunkSize, worldHeight, paddedSize;
+    /**
+     * Block states (id << 4 | meta), MISSING for unavailable blocks
+     */
+    private final short[] states;
+    /**
+     * Light, sunlight in the upper nibble and blocklight in the lower nibble
+     */
+    private final byte[] light;
+    /**
+     * Dense copy of one chunk's box, before it gets spread out into the padded arrays
+     */
+    private final short[] stateScratch;
+    private final byte[] lightScratch;
+    private final short[] highestBlocks;
+    private final float[] brightness;
+    private final boolean[] enclosedSections;
+
+    private int minY, maxY;
+    private int highestPoint;
+    private Vec3i startPosition;
+
+    private ChunkSnapshot(int chunkSize, int worldHeight) {
+        this.chunkSize = chunkSize;
+        this.worldHeight = worldHeight;
+        this.paddedSize = chunkSize + 2;
+        int volume = paddedSize * paddedSize * (worldHeight + 2);
+        this.states = new short[volume];
+        this.light = new byte[volume];
+        this.stateScratch = new short[chunkSize * chunkSize * worldHeight];
+        this.lightScratch = new byte[chunkSize * chunkSize * worldHeight];
+        this.highestBlocks = new short[chunkSize * chunkSize];
+        this.enclosedSections = new boolean[(worldHeight + SECTION_HEIGHT - 1) / SECTION_HEIGHT];
+        this.brightness = new float[16];
+    }
+
+    /**
+     * Copy a range of layers in a chunk and the blocks around it.
+     *
+     * The snapshot returned is owned by the calling thread and gets overwritten by the next capture on that thread.
+     *
+     * @param minY Lowest layer to capture, inclusive
+     * @param maxY Highest layer to capture, exclusive
+     */
+    public static ChunkSnapshot capture(IChunk chunk, int minY, int maxY) {
+        int chunkSize = chunk.getWorld().getChunkSize();
+        int worldHeight = chunk.getWorld().getHeight();
+        ChunkSnapshot snapshot = SNAPSHOTS.get();
+        if (snapshot == null || snapshot.chunkSize != chunkSize || snapshot.worldHeight != worldHeight) {
+            snapshot = new ChunkSnapshot(chunkSize, worldHeight);
+            SNAPSHOTS.set(snapshot);
+        }
+        snapshot.fill(chunk, Math.max(0, minY), Math.min(worldHeight, maxY));
+        return snapshot;
+    }
+
+    private void fill(IChunk chunk, int minY, int maxY) {
+        this.minY = minY;
+        this.maxY = maxY;
+        this.startPosition = chunk.getStartPosition();
+        this.highestPoint = chunk.getHighestPoint();
+        for (int i = 0; i < brightness.length; i++) {
+            brightness[i] = chunk.getBrightness(i);
+        }
+        for (int z = 0; z < chunkSize; z++) {
+            for (int x = 0; x < chunkSize; x++) {
+                highestBlocks[x + z * chunkSize] = (short) chunk.getHighestBlock(x, z);
+            }
+        }
+
+        // Layers just outside the world don't exist
+        int layerSize = paddedSize * paddedSize;
+        if (minY == 0)
+            fillMissing(0, layerSize);
+        if (maxY == worldHeight) {
+            int top = index(-1, maxY, -1);
+            fillMissing(top, top + layerSize);
+        }
+
+        int fromY = Math.max(0, minY - 1);
+        int toY = Math.min(worldHeight, maxY + 1);
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                copyFrom(chunk.getNeighbor(dx, dz), dx, dz, fromY, toY);
+            }
+        }
+
+        findEnclosedSections(chunk);
+    }
+
+    /**
+     * Copy the part of a chunk that falls inside the padded area
+     * @param c Chunk to copy from, or null if it isn't loaded
+     * @param dx X offset of the chunk from the one being captured, in chunks
+     * @param dz Z offset of the chunk from the one being captured, in chunks
+     */
+    private void copyFrom(IChunk c, int dx, int dz, int fromY, int toY) {
+        // Range in the source chunk's own coordinates
+        int x1 = dx < 0 ? chunkSize - 1 : 0;
+        int x2 = dx > 0 ? 1 : chunkSize;
+        int z1 = dz < 0 ? chunkSize - 1 : 0;
+        int z2 = dz > 0 ? 1 : chunkSize;
+        // Where that range starts in the padded coordinates
+        int destX = dx * chunkSize + x1;
+        int destZ = dz * chunkSize + z1;
+        int rowLength = x2 - x1;
+
+        if (c != null) {
+            try {
+                c.copyBlockStates(x1, fromY, z1, x2, toY, z2, stateScratch);
+                c.copyLight(x1, fromY, z1, x2, toY, z2, lightScratch);
+            } catch (CoordinatesOutOfBoundsException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        int src = 0;
+        for (int y = fromY; y < toY; y++) {
+            for (int z = z1; z < z2; z++) {
+                int dest = index(destX, y, destZ + (z - z1));
+                if (c == null) {
+                    fillMissing(dest, dest + rowLength);
+                } else {
+                    System.arraycopy(stateScratch, src, states, dest, rowLength);
+                    System.arraycopy(lightScratch, src, light, dest, rowLength);
+                    src += rowLength;
+                }
+            }
+        }
+    }
+
+    private void fillMissing(int from, int to) {
+        Arrays.fill(states, from, to, (short) MISSING);
+        Arrays.fill(light, from, to, (byte) 0);
+    }
+
+    /**
+     * Find sections that can't have any visible faces, so they can be skipped without reading any of their blocks.
+     *
+     * A section is enclosed when it's made up of a single opaque block state, and so are the sections above, below and next to it.
+     * Missing neighbor chunks count as enclosing, since faces against them aren't meshed anyway.
+     */
+    private void findEnclosedSections(IChunk chunk) {
+        int sections = enclosedSections.length;
+        IChunk[] neighbors = {
+                chunk.getNeighbor(-1, 0),
+                chunk.getNeighbor(1, 0),
+                chunk.getNeighbor(0, -1),
+                chunk.getNeighbor(0, 1)
+        };
+
+        boolean[] opaque = new boolean[sections];
+        for (int i = 0; i < sections; i++) {
+            opaque[i] = isOpaqueState(chunk.getUniformBlockState(i));
+        }
+
+        for (int i = 0; i < sections; i++) {
+            enclosedSections[i] = false;
+            if (!opaque[i] || (i > 0 && !opaque[i - 1]) || (i < sections - 1 && !opaque[i + 1]))
+                continue;
+            boolean allNeighborsOpaque = true;
+            for (IChunk neighbor : neighbors) {
+                if (neighbor != null && !isOpaqueState(neighbor.getUniformBlockState(i))) {
+                    allNeighborsOpaque = false;
+                    break;
+                }
+            }
+            enclosedSections[i] = allNeighborsOpaque;
+        }
+    }
+
+    /**
+     * @return True if the block state is a single opaque block that hides whatever is next to it
+     */
+    public static boolean isOpaqueState(int state) {
+        if (state <= 0)
+            return false;
+        Block block = RadixAPI.instance.getBlock(state >> 4);
+        return block != null && !block.isTranslucent() && block.occludeCovered();
+    }
+
+    /**
+     * @return Index into the padded arrays for chunk-relative coordinates
+     */
+    public int index(int x, int y, int z) {
+        return (x + 1) + (z + 1) * paddedSize + (y - minY + 1) * paddedSize * paddedSize;
+    }
+
+    /**
+     * @return Block state, or MISSING
+     */
+    public int getState(int x, int y, int z) {
+        return states[index(x, y, z)];
+    }
+
+    public int getId(int x, int y, int z) {
+        return (states[index(x, y, z)] & 0xFFFF) >> 4;
+    }
+
+    public int getMeta(int x, int y, int z) {
+        return states[index(x, y, z)] & 0xF;
+    }
+
+    /**
+     * @return Block, or null for air and missing blocks
+     */
+    public Block getBlock(int x, int y, int z) {
+        int state = states[index(x, y, z)];
+        if (state == MISSING)
+            return null;
+        return RadixAPI.instance.getBlock(state >> 4);
+    }
+
+    public boolean isMissing(int x, int y, int z) {
+        return states[index(x, y, z)] == MISSING;
+    }
+
+    public int getSunlight(int x, int y, int z) {
+        return (light[index(x, y, z)] >> 4) & 0xF;
+    }
+
+    public int getBlocklight(int x, int y, int z) {
+        return light[index(x, y, z)] & 0xF;
+    }
+
+    /**
+     * @return Brightness multiplier for a light level, same as the chunk's {@link IChunk#getBrightness(int)}
+     */
+    public float getBrightness(int lightLevel) {
+        if (lightLevel > 15)
+            return 1;
+        if (lightLevel < 0)
+            return 0;
+        return brightness[lightLevel];
+    }
+
+    /**
+     * @return Highest non-air block in the column, -1 if there is none
+     */
+    public int getHighestBlock(int x, int z) {
+        return highestBlocks[x + z * chunkSize];
+    }
+
+    public int getHighestPoint() {
+        return highestPoint;
+    }
+
+    /**
+     * @return True if the section can't have any visible faces
+     */
+    public boolean isSectionEnclosed(int section) {
+        return enclosedSections[section];
+    }
+
+    /**
+     * @return Lowest captured layer, inclusive. The layer below it is available too.
+     */
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * @return Highest captured layer, exclusive. This layer is available too.
+     */
+    public int getMaxY() {
+        return maxY;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getWorldHeight() {
+        return worldHeight;
+    }
+
+    public Vec3i getStartPosition() {
+        return startPosition;
+    }
+
+}
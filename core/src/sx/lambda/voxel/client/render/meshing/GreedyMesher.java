@@ -1,20 +1,16 @@
 package sx.lambda.voxel.client.render.meshing;
 
-import com.badlogic.gdx.graphics.GL20;
-import com.badlogic.gdx.graphics.Mesh;
-import com.badlogic.gdx.graphics.VertexAttributes;
-import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
 import sx.lambda.voxel.api.RadixAPI;
 import sx.lambda.voxel.block.Block;
 import sx.lambda.voxel.block.BlockRenderer;
 import sx.lambda.voxel.block.NormalBlockRenderer;
+import sx.lambda.voxel.block.RenderLayer;
 import sx.lambda.voxel.block.Side;
-import sx.lambda.voxel.world.IWorld;
-import sx.lambda.voxel.world.chunk.BlockStorage.CoordinatesOutOfBoundsException;
+import sx.lambda.voxel.client.render.ChunkRenderer;
+import sx.lambda.voxel.util.Vec3i;
 import sx.lambda.voxel.world.chunk.IChunk;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Mesher using the "greedy meshing" technique.
@@ -43,9 +39,18 @@ import java.util.List;
  *   [  ]   |___|
  *   []
  *
+ * Each slice through the chunk is turned into a flat int mask, one cell per block face.
+ * A cell holds the block state in the upper 16 bits and the face's light in the lower 16 bits, or 0 if there's no face there.
+ * Light is either the four corner levels packed into nibbles (per corner lighting), or the sunlight and blocklight next to the face.
+ * Two cells with the same value always render the same, so merging is mostly integer comparison.
+ * Masks live in thread-local buffers and are left zeroed by the greedy pass, so meshing doesn't allocate anything per block.
  */
 public class GreedyMesher implements Mesher {
 
+    private static final int SECTION_HEIGHT = 16;
+
+    private static final ThreadLocal<int[][]> MASKS = new ThreadLocal<>();
+
     private final IChunk chunk;
     private final boolean perCornerLight;
 
@@ -58,430 +63,354 @@ public class GreedyMesher implements Mesher {
         this.perCornerLight = perCornerLight;
     }
 
+    /**
+     * Mesh a range of layers in the chunk, sorting faces by render layer in the same sweep.
+     * Faces are never merged across the range boundaries.
+     *
+     * @param snapshot Snapshot of the chunk, covering at least minY to maxY
+     * @param minY Lowest layer to mesh, inclusive
+     * @param maxY Highest layer to mesh, exclusive
+     * @return Vertices for each render layer, indexed by {@link RenderLayer#ordinal()}. Release them when done.
+     */
     @Override
-    public Mesh meshVoxels(MeshBuilder builder, UseCondition condition) {
-        List<Face> faces = getFaces(condition);
-
-        return meshFaces(faces, builder);
+    public VertexWriter[] meshLayers(ChunkSnapshot snapshot, int minY, int maxY) {
+        VertexWriter[] output = new VertexWriter[RenderLayer.values().length];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = new VertexWriter();
+        }
+        mesh(snapshot, minY, maxY, output);
+        return output;
     }
 
-    public List<Face> getFaces(UseCondition condition, OccludeCondition ocCond, MergeCondition shouldMerge) {
-        List<Face> faces = new ArrayList<>();
-
-        PerCornerLightData bright;
-        if(perCornerLight) {
-            bright = new PerCornerLightData();
-            bright.l00 = 1;
-            bright.l01 = 1;
-            bright.l10 = 1;
-            bright.l11 = 1;
+    /**
+     * @param output Writers to put faces in, indexed by the render layer of the face's block
+     */
+    private void mesh(ChunkSnapshot snapshot, int minY, int maxY, VertexWriter[] output) {
+        int width = snapshot.getChunkSize();
+        int depth = width;
+        int height = snapshot.getHighestPoint()+1;
+        Vec3i startPosition = snapshot.getStartPosition();
+        int regionSlot = ChunkRenderer.getRegionSlot(startPosition.x, startPosition.z, snapshot.getChunkSize());
+        for (VertexWriter writer : output) {
+            // Vertices are stored relative to the chunk, the shader moves them into place from the chunk's slot in its region
+            writer.setOrigin(startPosition.x, startPosition.y, startPosition.z);
+            writer.setRegionSlot(regionSlot);
         }
+        minY = Math.max(minY, snapshot.getMinY());
+        maxY = Math.min(Math.min(maxY, height), snapshot.getMaxY());
+        if (minY >= maxY)
+            return;
+        int layers = maxY - minY;
+        // Only used while writing a single face, so one is enough for the whole run
+        PerCornerLightData pcld = perCornerLight ? new PerCornerLightData() : null;
+
+        int[][] masks = takeMasks(Math.max(width * depth, Math.max(width, depth) * layers));
+        int[] maskA = masks[0];
+        int[] maskB = masks[1];
 
-        int width = chunk.getWorld().getChunkSize();
-        int depth = width;
-        int height = chunk.getHighestPoint()+1;
         // Top, bottom
-        for (int y = 0; y <= chunk.getHighestPoint(); y++) {
-            boolean[][] topMask = new boolean[width][depth];
-            PerCornerLightData[][] topPcld = null;
-            if(perCornerLight) {
-                topPcld = new PerCornerLightData[width][depth];
-            }
-            boolean[][] btmMask = new boolean[width][depth];
-            PerCornerLightData[][] btmPcld = null;
-            if(perCornerLight) {
-                btmPcld = new PerCornerLightData[width][depth];
-            }
+        for (int y = minY; y < maxY; y++) {
+            if (snapshot.isSectionEnclosed(y / SECTION_HEIGHT))
+                continue;
             for (int z = 0; z < depth; z++) {
                 for (int x = 0; x < width; x++) {
-                    try {
-                        Block curBlock = chunk.getBlock(x, y, z);
-                        if (curBlock == null || !condition.shouldUse(curBlock))
-                            continue;
-
-                        if (y < height - 1) {
-                            if (!ocCond.shouldOcclude(curBlock, chunk.getBlock(x, y + 1, z))) {
-                                topMask[x][z] = true;
-
-                                if (perCornerLight) {
-                                    PerCornerLightData pcld = new PerCornerLightData();
-                                    pcld.l00 = calcPerCornerLight(Side.TOP, x, y, z);
-                                    pcld.l01 = calcPerCornerLight(Side.TOP, x, y, z + 1);
-                                    pcld.l10 = calcPerCornerLight(Side.TOP, x + 1, y, z);
-                                    pcld.l11 = calcPerCornerLight(Side.TOP, x + 1, y, z + 1);
-                                    topPcld[x][z] = pcld;
-                                }
-                            }
-                        }
-                        if (y > 0) {
-                            if (!ocCond.shouldOcclude(curBlock, chunk.getBlock(x, y - 1, z))) {
-                                btmMask[x][z] = true;
-
-                                if (perCornerLight) {
-                                    PerCornerLightData pcld = new PerCornerLightData();
-                                    pcld.l00 = calcPerCornerLight(Side.BOTTOM, x, y, z);
-                                    pcld.l01 = calcPerCornerLight(Side.BOTTOM, x, y, z + 1);
-                                    pcld.l10 = calcPerCornerLight(Side.BOTTOM, x + 1, y, z);
-                                    pcld.l11 = calcPerCornerLight(Side.BOTTOM, x + 1, y, z + 1);
-                                    btmPcld[x][z] = pcld;
-                                }
-                            }
-                        }
-                    } catch (CoordinatesOutOfBoundsException ex) {
-                        ex.printStackTrace();
-                    }
+                    if (y > snapshot.getHighestBlock(x, z))
+                        continue; // Nothing but air above the column's highest block
+                    int state = snapshot.getState(x, y, z);
+                    Block curBlock = snapshot.getBlock(x, y, z);
+                    if (curBlock == null)
+                        continue;
+
+                    maskA[x + z * width] = faceCell(snapshot, Side.TOP, state, curBlock, x, y, z);
+                    maskB[x + z * width] = faceCell(snapshot, Side.BOTTOM, state, curBlock, x, y, z);
                 }
             }
-            greedy(faces, Side.TOP, shouldMerge, topMask, topPcld, y, chunk.getStartPosition().x, chunk.getStartPosition().z, chunk.getStartPosition().y);
-            greedy(faces, Side.BOTTOM, shouldMerge, btmMask, btmPcld, y, chunk.getStartPosition().x, chunk.getStartPosition().z, chunk.getStartPosition().y);
+            greedy(output, snapshot, pcld, Side.TOP, maskA, width, depth, y, startPosition.x, startPosition.z, startPosition.y);
+            greedy(output, snapshot, pcld, Side.BOTTOM, maskB, width, depth, y, startPosition.x, startPosition.z, startPosition.y);
         }
 
         // East, west
         for (int x = 0; x < width; x++) {
-            boolean[][] westMask = new boolean[depth][chunk.getHighestPoint()+1];
-            PerCornerLightData[][] westPcld = null;
-            if(perCornerLight) {
-                westPcld = new PerCornerLightData[depth][chunk.getHighestPoint()+1];
-            }
-            boolean[][] eastMask = new boolean[depth][chunk.getHighestPoint()+1];
-            PerCornerLightData[][] eastPcld = null;
-            if(perCornerLight) {
-                eastPcld = new PerCornerLightData[depth][chunk.getHighestPoint()+1];
-            }
-            for (int y = 0; y <= chunk.getHighestPoint(); y++) {
+            for (int y = minY; y < maxY; y++) {
+                if (snapshot.isSectionEnclosed(y / SECTION_HEIGHT)) {
+                    y |= SECTION_HEIGHT - 1; // Jump to the last layer of the section, loop increment moves past it
+                    continue;
+                }
                 for (int z = 0; z < depth; z++) {
-                    try {
-                        Block curBlock = chunk.getBlock(x, y, z);
-                        if (curBlock == null || !condition.shouldUse(curBlock))
-                            continue;
-
-                        int westNeighborX = x - 1;
-                        IChunk westNeighborChunk = chunk;
-                        if(westNeighborX < 0) {
-                            westNeighborChunk = chunk.getWorld().getChunk(chunk.getStartPosition().x + westNeighborX, chunk.getStartPosition().z + z);
-                            westNeighborX += chunk.getWorld().getChunkSize();
-                        }
-                        if (westNeighborChunk != null) {
-                            Block westNeighborBlk = westNeighborChunk.getBlock(westNeighborX, y, z);
-                            if (!ocCond.shouldOcclude(curBlock, westNeighborBlk)) {
-                                westMask[z][y] = true;
-
-                                if (perCornerLight) {
-                                    PerCornerLightData pcld = new PerCornerLightData();
-                                    pcld.l00 = calcPerCornerLight(Side.WEST, x, y, z);
-                                    pcld.l01 = calcPerCornerLight(Side.WEST, x, y, z + 1);
-                                    pcld.l10 = calcPerCornerLight(Side.WEST, x, y + 1, z);
-                                    pcld.l11 = calcPerCornerLight(Side.WEST, x, y + 1, z + 1);
-                                    westPcld[z][y] = pcld;
-                                }
-                            }
-                        }
+                    if (y > snapshot.getHighestBlock(x, z))
+                        continue; // Nothing but air above the column's highest block
+                    int state = snapshot.getState(x, y, z);
+                    Block curBlock = snapshot.getBlock(x, y, z);
+                    if (curBlock == null)
+                        continue;
 
-                        int eastNeighborX = x + 1;
-                        IChunk eastNeighborChunk = chunk;
-                        if(eastNeighborX >= chunk.getWorld().getChunkSize()) {
-                            eastNeighborChunk = chunk.getWorld().getChunk(chunk.getStartPosition().x + eastNeighborX, chunk.getStartPosition().z + z);
-                            eastNeighborX -= chunk.getWorld().getChunkSize();
-                        }
-                        if (eastNeighborChunk != null) {
-                            Block eastNeighborBlk = eastNeighborChunk.getBlock(eastNeighborX, y, z);
-                            if (!ocCond.shouldOcclude(curBlock, eastNeighborBlk)) {
-                                eastMask[z][y] = true;
-
-                                if (perCornerLight) {
-                                    PerCornerLightData pcld = new PerCornerLightData();
-                                    pcld.l00 = calcPerCornerLight(Side.EAST, x, y, z);
-                                    pcld.l01 = calcPerCornerLight(Side.EAST, x, y, z + 1);
-                                    pcld.l10 = calcPerCornerLight(Side.EAST, x, y + 1, z);
-                                    pcld.l11 = calcPerCornerLight(Side.EAST, x, y + 1, z + 1);
-                                    eastPcld[z][y] = pcld;
-                                }
-                            }
-                        }
-                    } catch (CoordinatesOutOfBoundsException ex) {
-                        ex.printStackTrace();
-                    }
+                    maskA[z + (y - minY) * depth] = faceCell(snapshot, Side.EAST, state, curBlock, x, y, z);
+                    maskB[z + (y - minY) * depth] = faceCell(snapshot, Side.WEST, state, curBlock, x, y, z);
                 }
             }
 
-            greedy(faces, Side.EAST, shouldMerge, eastMask, eastPcld, x, chunk.getStartPosition().z, chunk.getStartPosition().y, chunk.getStartPosition().x);
-            greedy(faces, Side.WEST, shouldMerge, westMask, westPcld, x, chunk.getStartPosition().z, chunk.getStartPosition().y, chunk.getStartPosition().x);
+            greedy(output, snapshot, pcld, Side.EAST, maskA, depth, layers, x, startPosition.z, startPosition.y + minY, startPosition.x);
+            greedy(output, snapshot, pcld, Side.WEST, maskB, depth, layers, x, startPosition.z, startPosition.y + minY, startPosition.x);
         }
 
         // North, south
         for (int z = 0; z < depth; z++) {
-            boolean[][] northMask = new boolean[width][chunk.getHighestPoint()+1];
-            PerCornerLightData[][] northPcld = null;
-            if(perCornerLight) {
-                northPcld = new PerCornerLightData[width][chunk.getHighestPoint()+1];
-            }
-            boolean[][] southMask = new boolean[width][chunk.getHighestPoint()+1];
-            PerCornerLightData[][] southPcld = null;
-            if(perCornerLight) {
-                southPcld = new PerCornerLightData[width][chunk.getHighestPoint()+1];
-            }
-            for (int y = 0; y <= chunk.getHighestPoint(); y++) {
+            for (int y = minY; y < maxY; y++) {
+                if (snapshot.isSectionEnclosed(y / SECTION_HEIGHT)) {
+                    y |= SECTION_HEIGHT - 1; // Jump to the last layer of the section, loop increment moves past it
+                    continue;
+                }
                 for (int x = 0; x < width; x++) {
-                    try {
-                        Block curBlock = chunk.getBlock(x, y, z);
-                        if (curBlock == null || !condition.shouldUse(curBlock))
-                            continue;
-
-                        int northNeighborZ = z + 1;
-                        int southNeighborZ = z - 1;
-                        IChunk northNeighborChunk = chunk;
-                        IChunk southNeighborChunk = chunk;
-                        if(northNeighborZ >= chunk.getWorld().getChunkSize()) {
-                            northNeighborChunk = chunk.getWorld().getChunk(chunk.getStartPosition().x + x, chunk.getStartPosition().z + northNeighborZ);
-                            northNeighborZ -= chunk.getWorld().getChunkSize();
-                        } else if(southNeighborZ < 0) {
-                            southNeighborChunk = chunk.getWorld().getChunk(chunk.getStartPosition().x + x, chunk.getStartPosition().z + southNeighborZ);
-                            southNeighborZ += chunk.getWorld().getChunkSize();
-                        }
-
-                        if (northNeighborChunk != null) {
-                            Block northNeighborBlock = northNeighborChunk.getBlock(x, y, northNeighborZ);
-                            if (!ocCond.shouldOcclude(curBlock, northNeighborBlock)) {
-                                northMask[x][y] = true;
-
-                                if (perCornerLight) {
-                                    PerCornerLightData pcld = new PerCornerLightData();
-                                    pcld.l00 = calcPerCornerLight(Side.NORTH, x, y, z);
-                                    pcld.l01 = calcPerCornerLight(Side.NORTH, x, y + 1, z);
-                                    pcld.l10 = calcPerCornerLight(Side.NORTH, x + 1, y, z);
-                                    pcld.l11 = calcPerCornerLight(Side.NORTH, x + 1, y + 1, z);
-                                    northPcld[x][y] = pcld;
-                                }
-                            }
-                        }
+                    if (y > snapshot.getHighestBlock(x, z))
+                        continue; // Nothing but air above the column's highest block
+                    int state = snapshot.getState(x, y, z);
+                    Block curBlock = snapshot.getBlock(x, y, z);
+                    if (curBlock == null)
+                        continue;
 
-                        if (southNeighborChunk != null) {
-                            Block southNeighborBlock = southNeighborChunk.getBlock(x, y, southNeighborZ);
-                            if (!ocCond.shouldOcclude(curBlock, southNeighborBlock)) {
-                                southMask[x][y] = true;
-
-                                if (perCornerLight) {
-                                    PerCornerLightData pcld = new PerCornerLightData();
-                                    pcld.l00 = calcPerCornerLight(Side.SOUTH, x, y, z);
-                                    pcld.l01 = calcPerCornerLight(Side.SOUTH, x, y + 1, z);
-                                    pcld.l10 = calcPerCornerLight(Side.SOUTH, x + 1, y, z);
-                                    pcld.l11 = calcPerCornerLight(Side.SOUTH, x + 1, y + 1, z);
-                                    southPcld[x][y] = pcld;
-                                }
-                            }
-                        }
-                    } catch (CoordinatesOutOfBoundsException ex) {
-                        ex.printStackTrace();
-                    }
+                    maskA[x + (y - minY) * width] = faceCell(snapshot, Side.NORTH, state, curBlock, x, y, z);
+                    maskB[x + (y - minY) * width] = faceCell(snapshot, Side.SOUTH, state, curBlock, x, y, z);
                 }
             }
 
-            greedy(faces, Side.NORTH, shouldMerge, northMask, northPcld, z, chunk.getStartPosition().x, chunk.getStartPosition().y, chunk.getStartPosition().z);
-            greedy(faces, Side.SOUTH, shouldMerge, southMask, southPcld, z, chunk.getStartPosition().x, chunk.getStartPosition().y, chunk.getStartPosition().z);
+            greedy(output, snapshot, pcld, Side.NORTH, maskA, width, layers, z, startPosition.x, startPosition.y + minY, startPosition.z);
+            greedy(output, snapshot, pcld, Side.SOUTH, maskB, width, layers, z, startPosition.x, startPosition.y + minY, startPosition.z);
         }
 
-        return faces;
+        // The greedy pass zeroed the masks again as it went
+        MASKS.set(masks);
     }
 
-    private float calcLightLevel(Side side, int x, int y, int z) throws CoordinatesOutOfBoundsException {
-        switch(side) {
+    /**
+     * Take the thread's pair of zeroed masks, with room for at least the given amount of cells.
+     * They're only put back once a run finishes, so a run that fails partway through leaves the next one to start with fresh masks.
+     */
+    private static int[][] takeMasks(int cells) {
+        int[][] masks = MASKS.get();
+        if (masks == null || masks[0].length < cells)
+            return new int[][]{new int[cells], new int[cells]};
+        MASKS.set(null);
+        return masks;
+    }
+
+    /**
+     * Work out the mask cell for one side of a block
+     * @return Block state in the upper 16 bits and light in the lower 16 bits, or 0 if the face isn't visible
+     */
+    private int faceCell(ChunkSnapshot snapshot, Side side, int state, Block curBlock, int x, int y, int z) {
+        int nx = x, ny = y, nz = z;
+        switch (side) {
             case TOP:
-                y += 1;
+                ny++;
                 break;
             case BOTTOM:
-                y -= 1;
+                ny--;
                 break;
             case WEST:
-                x -= 1;
+                nx--;
                 break;
             case EAST:
-                x += 1;
+                nx++;
                 break;
             case NORTH:
-                z += 1;
+                nz++;
                 break;
             case SOUTH:
-                z -= 1;
+                nz--;
                 break;
         }
+        // Faces against missing blocks (unloaded chunks and outside of the world) are never drawn
+        if (snapshot.isMissing(nx, ny, nz) || occludes(curBlock, snapshot.getBlock(nx, ny, nz)))
+            return 0;
 
-        IWorld world = chunk.getWorld();
-        int chunkSize = world.getChunkSize();
-        IChunk sChunk = chunk;
-        if (z < 0) {
-            sChunk = world.getChunk(chunk.getStartPosition().x + x, chunk.getStartPosition().z + z);
-            z += chunkSize;
-        } else if (z > chunkSize - 1) {
-            sChunk = world.getChunk(chunk.getStartPosition().x + x, chunk.getStartPosition().z + z);
-            z -= chunkSize;
-        } else if (x < 0) {
-            sChunk = world.getChunk(chunk.getStartPosition().x + x, chunk.getStartPosition().z + z);
-            x += chunkSize;
-        } else if (x > chunkSize - 1) {
-            sChunk = world.getChunk(chunk.getStartPosition().x + x, chunk.getStartPosition().z + z);
-            x -= chunkSize;
+        int light;
+        if (perCornerLight) {
+            switch (side) {
+                case TOP:
+                case BOTTOM:
+                    light = packCorners(
+                            calcPerCornerLight(snapshot, side, x, y, z),
+                            calcPerCornerLight(snapshot, side, x, y, z + 1),
+                            calcPerCornerLight(snapshot, side, x + 1, y, z),
+                            calcPerCornerLight(snapshot, side, x + 1, y, z + 1));
+                    break;
+                case WEST:
+                case EAST:
+                    light = packCorners(
+                            calcPerCornerLight(snapshot, side, x, y, z),
+                            calcPerCornerLight(snapshot, side, x, y, z + 1),
+                            calcPerCornerLight(snapshot, side, x, y + 1, z),
+                            calcPerCornerLight(snapshot, side, x, y + 1, z + 1));
+                    break;
+                default:
+                    light = packCorners(
+                            calcPerCornerLight(snapshot, side, x, y, z),
+                            calcPerCornerLight(snapshot, side, x, y + 1, z),
+                            calcPerCornerLight(snapshot, side, x + 1, y, z),
+                            calcPerCornerLight(snapshot, side, x + 1, y + 1, z));
+                    break;
+            }
+        } else {
+            light = snapshot.getSunlight(nx, ny, nz) << 4 | snapshot.getBlocklight(nx, ny, nz);
         }
+        return (state & 0xFFFF) << 16 | light;
+    }
 
-        if(sChunk == null)
-            return 1;
-
-        return Math.min(1, sChunk.getBrightness(sChunk.getSunlight(x, y, z))
-                + sChunk.getBrightness(sChunk.getBlocklight(x, y, z)));
+    /**
+     * @param curBlock Current block being checked
+     * @param blockToSide Block the the side of the current block
+     * @return True if the side of the curBlock should be occluded
+     */
+    private static boolean occludes(Block curBlock, Block blockToSide) {
+        return !(blockToSide == null || (blockToSide.isTranslucent() && !curBlock.isTranslucent()))
+                && (curBlock.occludeCovered() && blockToSide.occludeCovered());
     }
 
-    public List<Face> getFaces(UseCondition condition) {
-        return getFaces(condition,
-                (curBlock, blockToSide) ->
-                        !(blockToSide == null || (blockToSide.isTranslucent() && !curBlock.isTranslucent()))
-                                && (curBlock.occludeCovered() && blockToSide.occludeCovered()),
-                (id1, meta1, light1, pcld1, id2, meta2, light2, pcld2) -> {
-                    Block block1 = RadixAPI.instance.getBlock(id1);
-                    if (!block1.shouldGreedyMerge())
-                        return false;
-                    boolean sameBlock = id1 == id2 && meta1 == meta2;
-                    boolean sameLight = light1 == light2;
-                    boolean tooDarkToTell = light1 < 0.1f; // Too dark to tell they're not the same block
-                    if(perCornerLight) {
-                        sameLight = pcld1.equals(pcld2);
-                    }
-                    if (sameLight && !sameBlock && tooDarkToTell) {
-                        Block block2 = RadixAPI.instance.getBlock(id2);
-                        // Other block renderers may alter shape in an unpredictable way
-                        if (block1.getRenderer().getClass() == NormalBlockRenderer.class
-                                && block2.getRenderer().getClass() == NormalBlockRenderer.class
-                                && !block1.isTranslucent() && !block2.isTranslucent())
-                            sameBlock = true; // Consider them the same block
-                    }
-                    return sameBlock && sameLight;
-                });
+    private static int packCorners(int l00, int l01, int l10, int l11) {
+        return l00 | l01 << 4 | l10 << 8 | l11 << 12;
     }
 
     /**
-     * @param outputList List to put faces in
+     * @param output     Writers to put faces in, indexed by render layer
+     * @param pcld       Scratch light data for per corner lighting, null when it's off
      * @param side       Side being meshed
-     * @param z          Depth on the plane
+     * @param mask       Cells for the slice, indexed u + v*maskWidth. Zeroed as faces are taken out of it.
+     * @param slice      Depth of the slice on the axis the side faces along
      */
-    private void greedy(List<Face> outputList, Side side, MergeCondition mergeCond, boolean[][] mask, PerCornerLightData[][] pclds, int z, int offsetX, int offsetY, int offsetZ) {
-        int width = mask.length;
-        int height = mask[0].length;
-        boolean[][] used = new boolean[mask.length][mask[0].length];
-
-        try {
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    if (!mask[x][y])
-                        continue;
-
-                    // "real" values of x,y,z
-                    int rx = realX(side, x, y, z);
-                    int ry = realY(side, x, y, z);
-                    int rz = realZ(side, x, y, z);
+    private void greedy(VertexWriter[] output, ChunkSnapshot snapshot, PerCornerLightData pcld, Side side, int[] mask, int maskWidth, int maskHeight, int slice,
+                        int offsetU, int offsetV, int offsetSlice) {
+        for (int v = 0; v < maskHeight; v++) {
+            for (int u = 0; u < maskWidth; ) {
+                int cell = mask[u + v * maskWidth];
+                if (cell == 0) {
+                    u++;
+                    continue;
+                }
 
-                    int blk = chunk.getBlockId(rx, ry, rz);
-                    short meta = chunk.getMeta(rx, ry, rz);
-                    if (blk == 0 || used[x][y])
-                        continue;
-                    used[x][y] = true;
-                    float ll = 15;
-                    PerCornerLightData pcld = null;
-                    if (perCornerLight) {
-                        pcld = pclds[x][y];
-                    } else {
-                        ll = calcLightLevel(side, rx, ry, rz);
+                int id = (cell >>> 16) >> 4;
+                Block block = RadixAPI.instance.getBlock(id);
+                boolean mergeable = block.shouldGreedyMerge();
+                // Too dark to tell different plain blocks apart, let them merge as long as the light matches
+                boolean mergeDark = mergeable && !perCornerLight && isPlainOpaque(block)
+                        && flatBrightness(snapshot, cell & 0xFFFF) < 0.1f;
+
+                // Expand right
+                int endU = u + 1;
+                if (mergeable) {
+                    while (endU < maskWidth && canMerge(cell, mask[endU + v * maskWidth], mergeDark)) {
+                        endU++;
                     }
-                    int endX = x + 1;
-                    int endY = y + 1;
-                    while (true) {
-                        int newX = endX;
-                        boolean shouldPass = false;
-                        if (newX < width) {
-                            int newRX = realX(side, newX, y, z);
-                            int newRY = realY(side, newX, y, z);
-                            int newRZ = realZ(side, newX, y, z);
-                            int newBlk = chunk.getBlockId(newRX, newRY, newRZ);
-                            int newMeta = chunk.getMeta(newRX, newRY, newRZ);
-                            float newll = 15;
-                            PerCornerLightData newPcld = null;
-                            if (perCornerLight) {
-                                newPcld = pclds[newX][y];
-                            } else {
-                                newll = calcLightLevel(side, newRX, newRY, newRZ);
-                            }
-                            shouldPass = !used[newX][y] && newBlk != 0 && mergeCond.shouldMerge(blk, meta, ll, pcld, newBlk, newMeta, newll, newPcld);
-                        }
-                        // expand right if the same block
-                        if (shouldPass) {
-                            endX++;
-                            used[newX][y] = true;
-                        } else { // done on initial pass right. Start passing up.
-                            while (true) {
-                                if (endY == height) break;
-                                boolean allPassed = true;
-                                // sweep right
-                                for (int lx = x; lx < endX; lx++) {
-                                    // "real" coordinates for the length block
-                                    int lRX = realX(side, lx, endY, z);
-                                    int lRY = realY(side, lx, endY, z);
-                                    int lRZ = realZ(side, lx, endY, z);
-
-                                    int lblk = chunk.getBlockId(lRX, lRY, lRZ);
-                                    if (lblk == 0) {
-                                        allPassed = false;
-                                        break;
-                                    }
-                                    int lmeta = chunk.getMeta(lRX, lRY, lRZ);
-                                    float llight = 15;
-                                    PerCornerLightData lPcld = null;
-                                    if (perCornerLight) {
-                                        lPcld = pclds[lx][endY];
-                                    } else {
-                                        llight = calcLightLevel(side, lRX, lRY, lRZ);
-                                    }
-
-                                    if (used[lx][endY] || !mergeCond.shouldMerge(blk, meta, ll, pcld, lblk, lmeta, llight, lPcld)) {
-                                        allPassed = false;
-                                        break;
-                                    }
-                                }
-                                if (allPassed) {
-                                    for (int lx = x; lx < endX; lx++) {
-                                        used[lx][endY] = true;
-                                    }
-                                    endY++;
-                                } else {
-                                    break;
-                                }
-                            }
-                            break;
+                }
+
+                // Expand up, one full row at a time
+                int endV = v + 1;
+                if (mergeable) {
+                    expand:
+                    while (endV < maskHeight) {
+                        int row = endV * maskWidth;
+                        for (int lu = u; lu < endU; lu++) {
+                            if (!canMerge(cell, mask[lu + row], mergeDark))
+                                break expand;
                         }
+                        endV++;
                     }
-                    outputList.add(new Face(side, blk, ll, pcld, x + offsetX, y + offsetY, endX + offsetX, endY + offsetY, z + offsetZ));
                 }
+
+                // Clear the cells the face covers
+                for (int lv = v; lv < endV; lv++) {
+                    Arrays.fill(mask, u + lv * maskWidth, endU + lv * maskWidth, 0);
+                }
+
+                int light = cell & 0xFFFF;
+                float ll = 15;
+                if (pcld != null) {
+                    pcld.l00 = snapshot.getBrightness(light & 0xF);
+                    pcld.l01 = snapshot.getBrightness(light >> 4 & 0xF);
+                    pcld.l10 = snapshot.getBrightness(light >> 8 & 0xF);
+                    pcld.l11 = snapshot.getBrightness(light >> 12 & 0xF);
+                } else {
+                    ll = flatBrightness(snapshot, light);
+                }
+                renderFace(output[block.getRenderLayer().ordinal()], block, side, ll, pcld,
+                        u + offsetU, v + offsetV, endU + offsetU, endV + offsetV, slice + offsetSlice);
+                u = endU;
             }
-        } catch (CoordinatesOutOfBoundsException ex) {
-            throw new RuntimeException(ex);
         }
     }
 
-    public Mesh meshFaces(List<Face> faces, MeshBuilder builder) {
-        builder.begin(VertexAttributes.Usage.Position | VertexAttributes.Usage.TextureCoordinates | VertexAttributes.Usage.ColorPacked | VertexAttributes.Usage.Normal, GL20.GL_TRIANGLES);
+    /**
+     * @param cell Cell a face is being grown from
+     * @param other Cell to grow over
+     * @param mergeDark Whether different plain opaque blocks can be merged into the face as long as their light is the same
+     */
+    private static boolean canMerge(int cell, int other, boolean mergeDark) {
+        if (other == cell)
+            return true;
+        if (other == 0 || !mergeDark || (other & 0xFFFF) != (cell & 0xFFFF))
+            return false;
+        Block otherBlock = RadixAPI.instance.getBlock((other >>> 16) >> 4);
+        return otherBlock != null && isPlainOpaque(otherBlock);
+    }
 
-        builder.ensureVertices(faces.size() * 4);
-        for (Face f : faces) {
-            f.render(builder);
+    /**
+     * Other block renderers may alter shape in an unpredictable way, so only plain opaque blocks can stand in for each other.
+     * Also keeps faces from ever being merged across render layers.
+     */
+    private static boolean isPlainOpaque(Block block) {
+        return block.getRenderer().getClass() == NormalBlockRenderer.class && block.getRenderLayer() == RenderLayer.OPAQUE;
+    }
+
+    /**
+     * @param light Sunlight in the upper nibble and blocklight in the lower nibble
+     */
+    private static float flatBrightness(ChunkSnapshot snapshot, int light) {
+        return Math.min(1, snapshot.getBrightness(light >> 4 & 0xF) + snapshot.getBrightness(light & 0xF));
+    }
+
+    /**
+     * Write a merged face through the block's renderer
+     * @param x1 Start of the face on the first axis along it, in world coordinates
+     * @param y1 Start of the face on the second axis along it, in world coordinates
+     * @param x2 End of the face on the first axis along it, in world coordinates
+     * @param y2 End of the face on the second axis along it, in world coordinates
+     * @param z Position of the block on the axis the face points along, in world coordinates
+     */
+    private static void renderFace(VertexWriter writer, Block block, Side side, float lightLevel, PerCornerLightData pcld,
+                                   int x1, int y1, int x2, int y2, int z) {
+        BlockRenderer renderer = block.getRenderer();
+
+        switch (side) {
+            case TOP:
+                renderer.renderTop(block.getTextureIndex(), x1, y1, x2, y2, z + 1, lightLevel, pcld, writer);
+                break;
+            case BOTTOM:
+                renderer.renderBottom(block.getTextureIndex(), x1, y1, x2, y2, z, lightLevel, pcld, writer);
+                break;
+            case NORTH:
+                renderer.renderNorth(block.getTextureIndex(), x1, y1, x2, y2, z + 1, lightLevel, pcld, writer);
+                break;
+            case SOUTH:
+                renderer.renderSouth(block.getTextureIndex(), x1, y1, x2, y2, z, lightLevel, pcld, writer);
+                break;
+            case EAST:
+                renderer.renderEast(block.getTextureIndex(), x1, y1, x2, y2, z + 1, lightLevel, pcld, writer);
+                break;
+            case WEST:
+                renderer.renderWest(block.getTextureIndex(), x1, y1, x2, y2, z, lightLevel, pcld, writer);
+                break;
         }
-        return builder.end();
     }
 
     /**
-     * Averages light values at a corner.
+     * Averages light levels at a corner.
      *
      * @param side Side of the face being calculated
      * @param cx Chunk-relative X coordinate for the corner. NOT PRE-OFFSET FOR THE FACE!
      * @param y Chunk-relative Y coordinate for the corner. NOT PRE-OFFSET FOR THE FACE!
      * @param cz Chunk-relative Z coordinate for the corner. NOT PRE-OFFSET FOR THE FACE!
+     * @return Average light level of the blocks around the corner, rounded to the nearest level
      */
-    private float calcPerCornerLight(Side side, int cx, int y, int cz) {
+    private int calcPerCornerLight(ChunkSnapshot snapshot, Side side, int cx, int y, int cz) {
         // coordinate offsets for getting the blocks to average
         int posX = 0, negX = 0,
                 posY = 0, negY = 0,
@@ -526,157 +455,20 @@ public class GreedyMesher implements Mesher {
         }
         // sx,sy,sz are the x, y, and z positions of the side block
         int count = 0;
-        float lightSum = 0;
+        int lightSum = 0;
         for(int sy = y + negY; sy <= y + posY; sy++) {
-            if(sy < 0 || sy >= chunk.getWorld().getHeight())
-                continue;
             for(int sz = cz + negZ; sz <= cz + posZ; sz++) {
                 for(int sx = cx + negX; sx <= cx + posX; sx++) {
-                    IChunk sChunk = chunk;
-                    boolean getChunk = false; // whether the block is not in the current chunk and a new chunk should be found
-                    int getChunkX = chunk.getStartPosition().x + sx;
-                    int getChunkZ = chunk.getStartPosition().z + sz;
-                    int fixedSz = sz;
-                    int fixedSx = sx;
-                    if(sz < 0) {
-                        fixedSz = chunk.getWorld().getChunkSize() + sz;
-                        getChunk = true;
-                    } else if(sz >= chunk.getWorld().getChunkSize()) {
-                        fixedSz = sz - chunk.getWorld().getChunkSize();
-                        getChunk = true;
-                    }
-                    if(sx < 0) {
-                        fixedSx = chunk.getWorld().getChunkSize() + sx;
-                        getChunk = true;
-                    } else if(sx >= chunk.getWorld().getChunkSize()) {
-                        fixedSx = sx - chunk.getWorld().getChunkSize();
-                        getChunk = true;
-                    }
-                    if(getChunk) {
-                        sChunk = chunk.getWorld().getChunk(getChunkX, getChunkZ);
-                    }
-                    if (sChunk == null)
+                    // Skip blocks in unloaded chunks and outside of the world
+                    if (snapshot.isMissing(sx, sy, sz))
                         continue;
 
-                    try {
-                        // Convert to chunk-relative coords
-                        lightSum += sChunk.getLightLevel(fixedSx, sy, fixedSz);
-                        count++;
-                    } catch (CoordinatesOutOfBoundsException ex) {
-                        ex.printStackTrace();
-                    }
+                    lightSum += Math.min(15, snapshot.getSunlight(sx, sy, sz) + snapshot.getBlocklight(sx, sy, sz));
+                    count++;
                 }
             }
         }
-        return lightSum / count;
-    }
-
-    public static class Face {
-        private final Side side;
-        private final int x1, y1, x2, y2, z;
-        private final Block block;
-        private final float lightLevel;
-        private final PerCornerLightData pcld;
-
-        /**
-         * @param pcld Per corner light data. Pass null if per corner lighting is disabled.
-         */
-        public Face(Side side, int block, float lightLevel, PerCornerLightData pcld, int startX, int startY, int endX, int endY, int z) {
-            this.block = RadixAPI.instance.getBlock(block);
-            this.lightLevel = lightLevel;
-            this.x1 = startX;
-            this.y1 = startY;
-            this.x2 = endX;
-            this.y2 = endY;
-            this.z = z;
-            this.side = side;
-            this.pcld = pcld;
-        }
-
-        public void render(MeshBuilder builder) {
-            BlockRenderer renderer = block.getRenderer();
-
-            switch (side) {
-                case TOP:
-                    renderer.renderTop(block.getTextureIndex(), x1, y1, x2, y2, z + 1, lightLevel, pcld, builder);
-                    break;
-                case BOTTOM:
-                    renderer.renderBottom(block.getTextureIndex(), x1, y1, x2, y2, z, lightLevel, pcld, builder);
-                    break;
-                case NORTH:
-                    renderer.renderNorth(block.getTextureIndex(), x1, y1, x2, y2, z + 1, lightLevel, pcld, builder);
-                    break;
-                case SOUTH:
-                    renderer.renderSouth(block.getTextureIndex(), x1, y1, x2, y2, z, lightLevel, pcld, builder);
-                    break;
-                case EAST:
-                    renderer.renderEast(block.getTextureIndex(), x1, y1, x2, y2, z + 1, lightLevel, pcld, builder);
-                    break;
-                case WEST:
-                    renderer.renderWest(block.getTextureIndex(), x1, y1, x2, y2, z, lightLevel, pcld, builder);
-                    break;
-
-            }
-        }
-    }
-
-    // Find "real" x based on relative position in the greedy method
-    private int realX(Side side, int x, int y, int z) {
-        switch(side) {
-            case TOP:
-            case BOTTOM:
-            case NORTH:
-            case SOUTH:
-                return x;
-            case EAST:
-            case WEST:
-                return z;
-        }
-        throw new RuntimeException("WTF SIDE???");
-    }
-
-    // Find "real" y based on relative position in the greedy method
-    private int realY(Side side, int x, int y, int z) {
-        switch(side) {
-            case EAST:
-            case WEST:
-            case NORTH:
-            case SOUTH:
-                return y;
-            case TOP:
-            case BOTTOM:
-                return z;
-        }
-        throw new RuntimeException("WTF SIDE???");
-    }
-
-    // Find "real" z based on relative position in the greedy method
-    private int realZ(Side side, int x, int y, int z) {
-        switch(side) {
-            case TOP:
-            case BOTTOM:
-                return y;
-            case WEST:
-            case EAST:
-                return x;
-            case NORTH:
-            case SOUTH:
-                return z;
-        }
-        throw new RuntimeException("WTF SIDE???");
-    }
-
-    public interface OccludeCondition {
-        /**
-         * @param curBlock Current block being checked
-         * @param blockToSide Block the the side of the current block
-         * @return True if the side of the curBlock should be occluded
-         */
-        boolean shouldOcclude(Block curBlock, Block blockToSide);
-    }
-
-    public interface MergeCondition {
-        boolean shouldMerge(int id1, int meta1, float light1, PerCornerLightData pcld1, int id2, int meta2, float light2, PerCornerLightData pcld2);
+        return (lightSum * 2 + count) / (count * 2);
     }
 
 }
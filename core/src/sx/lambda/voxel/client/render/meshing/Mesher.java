@@ -1,29 +1,18 @@
 package sx.lambda.voxel.client.render.meshing;
 
-import com.badlogic.gdx.graphics.Mesh;
-import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
-import sx.lambda.voxel.block.Block;
-import sx.lambda.voxel.world.chunk.BlockStorage;
-
 /**
  * Turns an array of voxels into OpenGL vertices
  */
 public interface Mesher {
 
     /**
-     * Meshes the specified voxels.
+     * Mesh a range of layers of a chunk. Only writes vertices, uploading them is up to the caller.
      *
-     * @param builder     MeshBuilder to build the mesh onto
-     * @param storage     Blocks to mesh
+     * @param snapshot Snapshot of the chunk, covering at least minY to maxY
+     * @param minY Lowest layer to mesh, inclusive
+     * @param maxY Highest layer to mesh, exclusive
+     * @return Vertices for each render layer, indexed by {@link sx.lambda.voxel.block.RenderLayer#ordinal()}. Release them when done.
      */
-    Mesh meshVoxels(MeshBuilder builder, UseCondition condition);
-
-    interface UseCondition {
-        /**
-         * @param block Block to check
-         * @return True if the block should be used in this mesh
-         */
-        boolean shouldUse(Block block);
-    }
+    VertexWriter[] meshLayers(ChunkSnapshot snapshot, int minY, int maxY);
 
 }
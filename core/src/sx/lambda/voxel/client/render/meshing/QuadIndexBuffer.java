@@ -0,0 +1,49 @@
+package sx.lambda.voxel.client.render.meshing;
+
+import com.badlogic.gdx.graphics.glutils.IndexBufferObject;
+
+/**
+ * One index buffer shared by every chunk mesh.
+ *
+ * Chunk geometry is nothing but quads, so the indices are always the same pattern (0, 1, 2, 2, 3, 0, then the same plus 4 for the next quad, and so on).
+ * Instead of every mesh building and uploading its own copy, the pattern is uploaded once, sized for the largest mesh possible,
+ * and each draw uses however much of it it needs.
+ */
+public class QuadIndexBuffer {
+
+    public static final int INDICES_PER_QUAD = 6;
+
+    private static IndexBufferObject shared;
+
+    /**
+     * Bind the shared indices to GL_ELEMENT_ARRAY_BUFFER. Since every chunk mesh uses them, this only has to happen once for a whole pass of chunks.
+     */
+    public static void bind() {
+        getShared().bind();
+    }
+
+    public static void unbind() {
+        getShared().unbind();
+    }
+
+    private static IndexBufferObject getShared() {
+        if (shared == null) {
+            int quads = VertexWriter.MAX_QUADS;
+            short[] indices = new short[quads * INDICES_PER_QUAD];
+            for (int quad = 0, i = 0; quad < quads; quad++) {
+                short v = (short) (quad * VertexWriter.VERTICES_PER_QUAD);
+                indices[i++] = v;
+                indices[i++] = (short) (v + 1);
+                indices[i++] = (short) (v + 2);
+                indices[i++] = (short) (v + 2);
+                indices[i++] = (short) (v + 3);
+                indices[i++] = v;
+            }
+            IndexBufferObject ibo = new IndexBufferObject(true, indices.length);
+            ibo.setIndices(indices, 0, indices.length);
+            shared = ibo;
+        }
+        return shared;
+    }
+
+}
@@ -0,0 +1,229 @@
+package sx.lambda.voxel.client.render.meshing;
+
+import sx.lambda.voxel.block.Side;
+
+/**
+ * Works out which faces of a chunk section can see each other through the section, for cave culling.
+ *
+ * Two faces are connected if there's a path of blocks that aren't opaque from one to the other.
+ * The result is packed into a long with bit (from * 6 + to) set for each connected pair of faces, indexed by {@link Side} ordinal.
+ * The pairs are symmetric, so both bits are always set together.
+ *
+ * Flood fills only start from blocks on the edge of the section, since pockets that don't touch a face can't connect anything.
+ *
+ * Also finds the layers of the section that are opaque all the way across, which make safe occluders for occlusion culling,
+ * and the bounds of the blocks in the section for frustum culling.
+ */
+public class SectionConnectivity {
+
+    private static final int SIDES = Side.values().length;
+    /**
+     * Every face connected to every other face, as for a section with nothing in it
+     */
+    public static final long ALL = (1L << SIDES * SIDES) - 1;
+    /**
+     * No faces connected, as for a solid section
+     */
+    public static final long NONE = 0;
+    /**
+     * Bounds of a section with no blocks in it
+     */
+    public static final int EMPTY_BOUNDS = 0;
+    /**
+     * Bounds covering the whole section, for sections that haven't been looked at yet
+     */
+    public static final int FULL_BOUNDS = packBounds(0, 0, 0, 16, 16, 16);
+    private static final int SECTION_HEIGHT = 16;
+    private static final int BOUND_BITS = 5;
+    private static final ThreadLocal<SectionConnectivity> SCRATCH = new ThreadLocal<>();
+
+    private final int chunkSize;
+    /**
+     * 1 for blocks that can't be passed through or were already filled, indexed x + z*size + y*size*size
+     */
+    private final byte[] blocked;
+    private final int[] stack;
+
+    private long connections;
+    private int opaqueLayers;
+    private int bounds;
+
+    private SectionConnectivity(int chunkSize) {
+        this.chunkSize = chunkSize;
+        this.blocked = new byte[chunkSize * chunkSize * SECTION_HEIGHT];
+        this.stack = new int[blocked.length];
+    }
+
+    /**
+     * @param from Face that's looked through
+     * @param to Face that's looked out of
+     * @return True if something going in through the first face can come out of the second
+     */
+    public static boolean isConnected(long connections, int from, int to) {
+        return (connections & 1L << (from * SIDES + to)) != 0;
+    }
+
+    /**
+     * Work out the connections for a section of a snapshot.
+     *
+     * The result is owned by the calling thread and gets overwritten by the next call on that thread.
+     *
+     * @param minY Bottom layer of the section, has to be inside of the snapshot's range
+     */
+    public static SectionConnectivity compute(ChunkSnapshot snapshot, int minY) {
+        int chunkSize = snapshot.getChunkSize();
+        SectionConnectivity scratch = SCRATCH.get();
+        if (scratch == null || scratch.chunkSize != chunkSize) {
+            scratch = new SectionConnectivity(chunkSize);
+            SCRATCH.set(scratch);
+        }
+        scratch.connections = scratch.fill(snapshot, minY);
+        return scratch;
+    }
+
+    /**
+     * @return Which faces connect, see {@link #isConnected(long, int, int)}
+     */
+    public long getConnections() {
+        return connections;
+    }
+
+    /**
+     * @return Bit mask of the layers that are entirely opaque blocks, bit n being the layer n blocks above the bottom of the section
+     */
+    public int getOpaqueLayers() {
+        return opaqueLayers;
+    }
+
+    /**
+     * @return Box around every block in the section that isn't air, see {@link #getBound(int, int)}
+     */
+    public int getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Pack a box inside of a section into an int. Coordinates are relative to the section, max coordinates are exclusive.
+     */
+    public static int packBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return minX | minY << BOUND_BITS | minZ << BOUND_BITS * 2
+                | maxX << BOUND_BITS * 3 | maxY << BOUND_BITS * 4 | maxZ << BOUND_BITS * 5;
+    }
+
+    /**
+     * Get one coordinate out of packed bounds
+     * @param index 0-2 for the min x, y and z, 3-5 for the max x, y and z
+     */
+    public static int getBound(int bounds, int index) {
+        return bounds >> index * BOUND_BITS & (1 << BOUND_BITS) - 1;
+    }
+
+    private long fill(ChunkSnapshot snapshot, int minY) {
+        int layers = Math.min(SECTION_HEIGHT, snapshot.getWorldHeight() - minY);
+        int layerSize = chunkSize * chunkSize;
+        int opaque = 0;
+        opaqueLayers = 0;
+        int minX = chunkSize, minLayer = SECTION_HEIGHT, minZ = chunkSize, maxX = 0, maxLayer = 0, maxZ = 0;
+        int i = 0;
+        for (int y = 0; y < SECTION_HEIGHT; y++) {
+            int opaqueInLayer = 0;
+            for (int z = 0; z < chunkSize; z++) {
+                for (int x = 0; x < chunkSize; x++, i++) {
+                    // Layers past the top of the world are left out, nothing can be seen through them from outside the world anyway
+                    int state = y < layers ? snapshot.getState(x, minY + y, z) : 0;
+                    boolean solid = y >= layers || ChunkSnapshot.isOpaqueState(state);
+                    blocked[i] = (byte) (solid ? 1 : 0);
+                    if (solid)
+                        opaqueInLayer++;
+                    if (state > 0) {
+                        minX = Math.min(minX, x);
+                        minLayer = Math.min(minLayer, y);
+                        minZ = Math.min(minZ, z);
+                        maxX = Math.max(maxX, x + 1);
+                        maxLayer = Math.max(maxLayer, y + 1);
+                        maxZ = Math.max(maxZ, z + 1);
+                    }
+                }
+            }
+            if (y < layers && opaqueInLayer == layerSize) {
+                opaqueLayers |= 1 << y;
+            }
+            opaque += opaqueInLayer;
+        }
+        bounds = maxLayer == 0 ? EMPTY_BOUNDS : packBounds(minX, minLayer, minZ, maxX, maxLayer, maxZ);
+        if (opaque == 0)
+            return ALL;
+        if (opaque == blocked.length)
+            return NONE;
+
+        long connections = NONE;
+        int last = chunkSize - 1;
+        for (int y = 0; y < SECTION_HEIGHT; y++) {
+            for (int z = 0; z < chunkSize; z++) {
+                boolean edgeRow = y == 0 || y == SECTION_HEIGHT - 1 || z == 0 || z == last;
+                // Inside rows only have edge blocks at either end
+                int step = edgeRow ? 1 : last;
+                for (int x = 0; x < chunkSize; x += step) {
+                    int index = x + z * chunkSize + y * chunkSize * chunkSize;
+                    if (blocked[index] != 0)
+                        continue;
+                    int faces = floodFaces(index);
+                    for (int from = 0; from < SIDES; from++) {
+                        if ((faces & 1 << from) == 0)
+                            continue;
+                        for (int to = 0; to < SIDES; to++) {
+                            if ((faces & 1 << to) != 0) {
+                                connections |= 1L << (from * SIDES + to);
+                            }
+                        }
+                    }
+                    if (connections == ALL)
+                        return ALL;
+                }
+            }
+        }
+        return connections;
+    }
+
+    /**
+     * Fill the pocket of open blocks that a block is in, marking them as blocked
+     * @return Bit mask of the faces the pocket touches, by {@link Side} ordinal
+     */
+    private int floodFaces(int start) {
+        int layerSize = chunkSize * chunkSize;
+        int last = chunkSize - 1;
+        int faces = 0;
+        int top = 0;
+        stack[top++] = start;
+        blocked[start] = 1;
+        while (top > 0) {
+            int index = stack[--top];
+            int x = index % chunkSize;
+            int z = index / chunkSize % chunkSize;
+            int y = index / layerSize;
+
+            if (y == SECTION_HEIGHT - 1) faces |= 1 << Side.TOP.ordinal();
+            else top = push(index + layerSize, top);
+            if (y == 0) faces |= 1 << Side.BOTTOM.ordinal();
+            else top = push(index - layerSize, top);
+            if (x == 0) faces |= 1 << Side.WEST.ordinal();
+            else top = push(index - 1, top);
+            if (x == last) faces |= 1 << Side.EAST.ordinal();
+            else top = push(index + 1, top);
+            if (z == last) faces |= 1 << Side.NORTH.ordinal();
+            else top = push(index + chunkSize, top);
+            if (z == 0) faces |= 1 << Side.SOUTH.ordinal();
+            else top = push(index - chunkSize, top);
+        }
+        return faces;
+    }
+
+    private int push(int index, int top) {
+        if (blocked[index] == 0) {
+            blocked[index] = 1;
+            stack[top++] = index;
+        }
+        return top;
+    }
+
+}
@@ -0,0 +1,239 @@
+package sx.lambda.voxel.client.render.meshing;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import sx.lambda.voxel.block.Side;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes quads straight into a direct buffer in the layout the GPU reads them in.
+ *
+ * Vertices are packed into 12 bytes, decoded by world.vert.glsl:
+ *   Position relative to the chunk's origin, in 1/16ths of a block. Low bytes of x, y and z, then their high bits (x 1 bit, z 1 bit, y 5 bits).
+ *   Atlas tile (12 bits) and face index (4 bits), then the chunk's slot in its region (8 bits).
+ *   Color, with light already applied.
+ * Everything goes in as unsigned bytes since those are the only non-float attributes libGDX can describe.
+ *
+ * Meant to be filled on a meshing thread. Getting it onto the GPU on the GL thread is then a single buffer upload, see {@link sx.lambda.voxel.client.render.ChunkRenderer#upload}.
+ *
+ * Buffers come from a pool shared by all writers. A writer hands its buffer back when it's released.
+ *
+ * Not thread safe. Each writer should only be used by one thread at a time.
+ */
+public class VertexWriter {
+
+    /**
+     * Packed position, tile and face, color. Each is four unsigned bytes.
+     * The units keep the attributes apart in the shader's attribute lookup, since they all share a usage.
+     */
+    public static final VertexAttributes ATTRIBUTES = new VertexAttributes(
+            new VertexAttribute(Usage.ColorPacked, 4, ShaderProgram.POSITION_ATTRIBUTE, 1),
+            new VertexAttribute(Usage.ColorPacked, 4, "a_packed", 2),
+            new VertexAttribute(Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE, 0));
+    public static final int INTS_PER_VERTEX = ATTRIBUTES.vertexSize / 4;
+    /**
+     * Positions are stored in steps of 1/POSITION_SCALE of a block
+     */
+    public static final int POSITION_SCALE = 16;
+    public static final int VERTICES_PER_QUAD = 4;
+    /**
+     * Short indices can only address this many quads
+     */
+    public static final int MAX_QUADS = (1 << 16) / VERTICES_PER_QUAD;
+
+    private static final int BYTES_PER_QUAD = VERTICES_PER_QUAD * ATTRIBUTES.vertexSize;
+    private static final int MIN_SIZE_CLASS = 12; // 4 KiB
+    private static final int MAX_SIZE_CLASS = 32 - Integer.numberOfLeadingZeros(MAX_QUADS * BYTES_PER_QUAD - 1);
+    /**
+     * Free buffers, indexed by size class. Every buffer in class n has a capacity of 2^n bytes.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Queue<ByteBuffer>[] POOL = new Queue[MAX_SIZE_CLASS + 1];
+    static {
+        for (int i = MIN_SIZE_CLASS; i <= MAX_SIZE_CLASS; i++) {
+            POOL[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    private ByteBuffer bytes;
+    private IntBuffer ints;
+    private int vertices;
+    private float originX, originY, originZ;
+    /**
+     * Atlas tile and face index, as they're written to each vertex
+     */
+    private int packedData;
+
+    public VertexWriter() {
+        bytes = obtainBuffer(MIN_SIZE_CLASS);
+        ints = bytes.asIntBuffer();
+    }
+
+    /**
+     * Set the world position that vertex positions are stored relative to, usually the chunk's start position.
+     * Positions have to end up within a chunk of it.
+     */
+    public VertexWriter setOrigin(float x, float y, float z) {
+        this.originX = x;
+        this.originY = y;
+        this.originZ = z;
+        return this;
+    }
+
+    /**
+     * Set which chunk of its region the vertices belong to, see {@link sx.lambda.voxel.client.render.ChunkRenderer#getRegionSlot(int, int, int)}.
+     * The shader adds the chunk's offset in the region to each position.
+     */
+    public VertexWriter setRegionSlot(int slot) {
+        packedData = packedData & 0xFFFF | (slot & 0xFF) << 16;
+        return this;
+    }
+
+    /**
+     * Set the side that the vertices written after this are facing, which decides their normal
+     */
+    public VertexWriter setSide(Side side) {
+        packedData = packedData & ~0xF000 | side.ordinal() << 12;
+        return this;
+    }
+
+    /**
+     * Set the atlas tile used for the vertices written after this
+     */
+    public VertexWriter setTexture(int atlasIndex) {
+        packedData = packedData & ~0xFFF | atlasIndex & 0xFFF;
+        return this;
+    }
+
+    /**
+     * Write a quad, corners in counter-clockwise order when looking at its front
+     * @param x1 World position of the first corner
+     * @param c1 Color of the first corner, see {@link #packColor(float, float, float, float)}
+     */
+    public void quad(float x1, float y1, float z1, int c1,
+                     float x2, float y2, float z2, int c2,
+                     float x3, float y3, float z3, int c3,
+                     float x4, float y4, float z4, int c4) {
+        if (vertices + VERTICES_PER_QUAD > MAX_QUADS * VERTICES_PER_QUAD)
+            throw new GdxRuntimeException("Too many vertices");
+        ensureCapacity(BYTES_PER_QUAD);
+        vertex(x1, y1, z1, c1);
+        vertex(x2, y2, z2, c2);
+        vertex(x3, y3, z3, c3);
+        vertex(x4, y4, z4, c4);
+    }
+
+    private void vertex(float x, float y, float z, int color) {
+        int px = Math.round((x - originX) * POSITION_SCALE);
+        int py = Math.round((y - originY) * POSITION_SCALE);
+        int pz = Math.round((z - originZ) * POSITION_SCALE);
+        int highBits = (px >> 8) & 1 | ((pz >> 8) & 1) << 1 | (py >> 8) << 2;
+
+        IntBuffer i = ints;
+        i.put(px & 0xFF | (py & 0xFF) << 8 | (pz & 0xFF) << 16 | highBits << 24);
+        i.put(packedData);
+        i.put(color);
+        vertices++;
+    }
+
+    /**
+     * Pack a color into the byte order the GPU reads it in
+     * @return Color as 0xAABBGGRR
+     */
+    public static int packColor(float r, float g, float b, float a) {
+        return Color.toIntBits((int) (r * 255), (int) (g * 255), (int) (b * 255), (int) (a * 255));
+    }
+
+    /**
+     * Copy everything written to another writer onto the end of this one
+     */
+    public void append(VertexWriter other) {
+        if (other.vertices == 0)
+            return;
+        if (vertices + other.vertices > MAX_QUADS * VERTICES_PER_QUAD)
+            throw new GdxRuntimeException("Too many vertices");
+        ensureCapacity(other.vertices * ATTRIBUTES.vertexSize);
+        IntBuffer src = other.ints.duplicate();
+        src.flip();
+        ints.put(src);
+        vertices += other.vertices;
+    }
+
+    public int getQuadCount() {
+        return vertices / VERTICES_PER_QUAD;
+    }
+
+    /**
+     * Drop everything written so far, keeping the buffer
+     */
+    public void clear() {
+        ints.clear();
+        vertices = 0;
+    }
+
+    /**
+     * @return View of everything written so far, ready to be uploaded
+     */
+    public ByteBuffer getData() {
+        ByteBuffer data = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        data.position(0);
+        data.limit(vertices * ATTRIBUTES.vertexSize);
+        return data;
+    }
+
+    /**
+     * Give the writer's buffer back to the pool. The writer can't be used after this.
+     */
+    public void release() {
+        if (bytes != null) {
+            freeBuffer(bytes);
+            bytes = null;
+            ints = null;
+        }
+    }
+
+    private void ensureCapacity(int extraBytes) {
+        int used = ints.position() * 4;
+        if (used + extraBytes <= bytes.capacity())
+            return;
+
+        int sizeClass = sizeClassFor(used + extraBytes);
+        ByteBuffer grown = obtainBuffer(sizeClass);
+        IntBuffer grownInts = grown.asIntBuffer();
+        ints.flip();
+        grownInts.put(ints);
+        freeBuffer(bytes);
+        bytes = grown;
+        ints = grownInts;
+    }
+
+    private static int sizeClassFor(int bytes) {
+        return Math.max(MIN_SIZE_CLASS, 32 - Integer.numberOfLeadingZeros(bytes - 1));
+    }
+
+    private static ByteBuffer obtainBuffer(int sizeClass) {
+        ByteBuffer buffer = POOL[sizeClass].poll();
+        if (buffer == null) {
+            // Byte order is fixed so the packed bytes land where the shader expects them on any platform
+            buffer = BufferUtils.newByteBuffer(1 << sizeClass).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static void freeBuffer(ByteBuffer buffer) {
+        int sizeClass = 31 - Integer.numberOfLeadingZeros(buffer.capacity());
+        POOL[sizeClass].offer(buffer);
+    }
+
+}
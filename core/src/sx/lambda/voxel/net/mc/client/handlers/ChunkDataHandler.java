@@ -9,12 +9,15 @@ import sx.lambda.voxel.api.BuiltInBlockIds;
 import sx.lambda.voxel.api.RadixAPI;
 import sx.lambda.voxel.util.Vec3i;
 import sx.lambda.voxel.world.biome.Biome;
-import sx.lambda.voxel.world.chunk.BlockStorage;
-import sx.lambda.voxel.world.chunk.FlatBlockStorage;
+import sx.lambda.voxel.world.chunk.PalettedBlockStorage;
 
 public class ChunkDataHandler implements PacketHandler<ServerChunkDataPacket> {
 
     private final RadixClient game;
+    /**
+     * Block states for the section currently being loaded, handed to the storage in one go so it can build its palette in a single pass
+     */
+    private final short[] sectionBlocks = new short[16*16*16];
 
     public ChunkDataHandler(RadixClient game) {
         this.game = game;
@@ -43,62 +46,56 @@ public class ChunkDataHandler implements PacketHandler<ServerChunkDataPacket> {
         if(!hadChunk) {
             ck = new sx.lambda.voxel.world.chunk.Chunk(game.getWorld(), new Vec3i(cx, 0, cz), biome, false);
         }
-        FlatBlockStorage[] blockStorages = ck.getBlockStorage();
+        PalettedBlockStorage[] blockStorages = ck.getBlockStorage();
 
         int yIndex = 0;
-        int highestPoint = 0;
         for(Chunk c : scdp.getColumn().getChunks()) {
             if(c == null) {
                 yIndex++;
                 continue;
             }
 
-            FlatBlockStorage storage = blockStorages[yIndex];
+            PalettedBlockStorage storage = blockStorages[yIndex];
             if(storage == null) {
-                storage = blockStorages[yIndex] = new FlatBlockStorage(16, 16, 16);
+                storage = blockStorages[yIndex] = new PalettedBlockStorage(16, 16, 16);
             }
 
+            int i = 0;
             for(int y = 0; y < 16; y++) {
                 for(int z = 0; z < 16; z++) {
                     for(int x = 0; x < 16; x++) {
                         BlockState blk = c.getBlocks().get(x, y, z);
                         int id = blk.getId();
 
-                        if(id == 0)
+                        if(id == 0) {
+                            sectionBlocks[i++] = 0;
                             continue;
-
-                        int meta = blk.getData();
+                        }
 
                         boolean exists = RadixAPI.instance.getBlock(id) != null;
                         if(!exists) {
-                            try {
-                                storage.setId(x, y, z, BuiltInBlockIds.UNKNOWN_ID);
-                            } catch (BlockStorage.CoordinatesOutOfBoundsException e) {
-                                e.printStackTrace();
-                            }
+                            sectionBlocks[i++] = (short)(BuiltInBlockIds.UNKNOWN_ID << 4);
                         } else {
-                            try {
-                                storage.setId(x, y, z, id);
-                                storage.setMeta(x, y, z, meta);
-                            } catch (BlockStorage.CoordinatesOutOfBoundsException e) {
-                                e.printStackTrace();
-                            }
+                            sectionBlocks[i++] = (short)(id << 4 | (blk.getData() & 0xF));
                         }
                     }
                 }
             }
+            storage.setBlocks(sectionBlocks);
 
             storage.setSunlight(c.getSkyLight());
             storage.setBlocklight(c.getBlockLight());
+            storage.compact();
 
             yIndex++;
-            highestPoint = yIndex*16;
         }
-        ck.setHighestPoint(Math.max(ck.getHighestPoint(), highestPoint));
+        ck.recalculateHeightmap();
         ck.finishAddingSun();
 
         if(!hadChunk) {
             game.getWorld().addChunk(ck);
+        } else {
+            game.getWorld().rerenderChunk(ck);
         }
 
         Gdx.graphics.requestRendering();
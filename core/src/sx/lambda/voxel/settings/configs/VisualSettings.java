@@ -11,6 +11,11 @@ public class VisualSettings implements Serializable {
      * Defaults to 4
      */
     private int viewDistance = 4;
+    /**
+     * Number of threads meshing chunks
+     * Defaults to 0, which uses one per core, leaving one for rendering
+     */
+    private int meshThreads = 0;
     /**
      * Whether to draw internal leaves of trees
      */
@@ -26,13 +31,21 @@ public class VisualSettings implements Serializable {
      */
     private ToggleOption nonContinuous = new ToggleOption("Frame Reuse", false);
     /**
-     * Whether to distribute chunk rerenders by only uploading one to the gpu per frame.
+     * Whether to distribute chunk rerenders by only spending {@link #chunkUploadBudget} ms a frame uploading them to the gpu.
      * This is for the GL stuff, since the non-gl stuff can be and is done on another thread.
      * <p>
-     * This should not be enabled on machines that don't see lag spikes when loading chunks,
-     * since it will make chunks take longer to load in at lower fps.
+     * With this off, every chunk that's ready is uploaded in the frame it's ready in, which can cause lag spikes while loading.
      */
     private ToggleOption smoothChunkLoad = new ToggleOption("Smooth Chunk Load", true);
+    /**
+     * Milliseconds per frame to spend uploading chunks when smooth chunk load is on
+     * Defaults to 4. At least one chunk is uploaded each frame no matter how long it takes.
+     */
+    private int chunkUploadBudget = 4;
+    /**
+     * Whether to skip chunks hidden behind terrain close to the camera, tested against a small depth buffer drawn on the CPU
+     */
+    private ToggleOption occlusionCulling = new ToggleOption("Occlusion Culling", true);
     /**
      * Whether to call glFinish() at the end of each frame
      * <p>
@@ -48,6 +61,10 @@ public class VisualSettings implements Serializable {
         return this.viewDistance;
     }
 
+    public int getMeshThreads() {
+        return this.meshThreads;
+    }
+
     public ToggleOption getFancyTrees() {
         return this.fancyTrees;
     }
@@ -64,6 +81,14 @@ public class VisualSettings implements Serializable {
         return this.smoothChunkLoad;
     }
 
+    public int getChunkUploadBudget() {
+        return this.chunkUploadBudget;
+    }
+
+    public ToggleOption getOcclusionCulling() {
+        return this.occlusionCulling;
+    }
+
     public ToggleOption getFinishEachFrame() {
         return this.finishEachFrame;
     }
@@ -0,0 +1,250 @@
+package sx.lambda.voxel.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Open addressing hash map with primitive long keys, safe to use from multiple threads.
+ *
+ * Reads never lock. Writes are serialized with a lock, since they're rare compared to reads (chunks get added and removed a few times a second,
+ * but looked up thousands of times a frame).
+ *
+ * Slots are claimed by writing the key and then publishing the value through a volatile write, so any reader that sees a value also sees its key.
+ * A slot's key never changes to a different key while the table is in use. Removed entries are replaced with a tombstone,
+ * and the table is rebuilt into a fresh array once tombstones pile up. Readers holding on to an old table keep seeing a consistent snapshot of it.
+ *
+ * Iteration is weakly consistent: it sees every entry that was in the map for the whole iteration, and may or may not see entries added or removed during it.
+ *
+ * @param <V> Value type. Null values are not allowed.
+ */
+public class ConcurrentLongMap<V> implements Iterable<V> {
+
+    private static final Object TOMBSTONE = new Object();
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private volatile Table table;
+    private volatile int size;
+    /**
+     * Slots in the current table that hold either a value or a tombstone. Only touched while holding the lock.
+     */
+    private int usedSlots;
+
+    public ConcurrentLongMap() {
+        this(64);
+    }
+
+    /**
+     * @param initialCapacity Amount of entries to make room for before the first resize
+     */
+    public ConcurrentLongMap(int initialCapacity) {
+        table = new Table(tableSizeFor(initialCapacity));
+    }
+
+    /**
+     * @return Value mapped to the key, or null if there isn't one
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        Table table = this.table;
+        int mask = table.keys.length - 1;
+        for(int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Object value = table.values.get(i);
+            if(value == null)
+                return null;
+            if(table.keys[i] == key)
+                return value == TOMBSTONE ? null : (V) value;
+        }
+    }
+
+    /**
+     * @return True if there is a value mapped to the key
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Map a value to a key, replacing any existing value
+     * @return Previous value mapped to the key, or null if there wasn't one
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V put(long key, V value) {
+        if(value == null)
+            throw new NullPointerException("Null values are not allowed");
+
+        Table table = this.table;
+        int mask = table.keys.length - 1;
+        int i = hash(key) & mask;
+        for(; ; i = (i + 1) & mask) {
+            Object existing = table.values.get(i);
+            if(existing == null)
+                break;
+            if(table.keys[i] == key) {
+                table.values.set(i, value);
+                if(existing == TOMBSTONE) {
+                    size++;
+                    return null;
+                }
+                return (V) existing;
+            }
+        }
+
+        table.keys[i] = key;
+        table.values.set(i, value); // Publishes the key along with the value
+        size++;
+        usedSlots++;
+        if(usedSlots > table.keys.length * LOAD_FACTOR) {
+            rebuild();
+        }
+        return null;
+    }
+
+    /**
+     * Remove the value mapped to a key
+     * @return Value that was mapped to the key, or null if there wasn't one
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(long key) {
+        Table table = this.table;
+        int mask = table.keys.length - 1;
+        for(int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Object existing = table.values.get(i);
+            if(existing == null)
+                return null;
+            if(table.keys[i] == key) {
+                if(existing == TOMBSTONE)
+                    return null;
+                table.values.set(i, TOMBSTONE);
+                size--;
+                return (V) existing;
+            }
+        }
+    }
+
+    /**
+     * Remove every entry
+     */
+    public synchronized void clear() {
+        table = new Table(table.keys.length);
+        size = 0;
+        usedSlots = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Weakly consistent view of the values in the map
+     */
+    public Iterable<V> values() {
+        return this;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new ValueIterator(table);
+    }
+
+    /**
+     * Copy the live entries into a new table, growing it if the live entries alone would fill it past the load factor
+     */
+    private void rebuild() {
+        Table old = this.table;
+        int capacity = old.keys.length;
+        while(size > capacity * LOAD_FACTOR / 2) {
+            capacity *= 2;
+        }
+
+        Table rebuilt = new Table(capacity);
+        int mask = capacity - 1;
+        int used = 0;
+        for(int j = 0; j < old.keys.length; j++) {
+            Object value = old.values.get(j);
+            if(value == null || value == TOMBSTONE)
+                continue;
+            long key = old.keys[j];
+            int i = hash(key) & mask;
+            while(rebuilt.values.get(i) != null) {
+                i = (i + 1) & mask;
+            }
+            rebuilt.keys[i] = key;
+            rebuilt.values.lazySet(i, value);
+            used++;
+        }
+
+        this.table = rebuilt; // Volatile write publishes the whole table
+        this.usedSlots = used;
+    }
+
+    private static int hash(long key) {
+        // Finalizer from MurmurHash3, spreads neighboring chunk coordinates across the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static int tableSizeFor(int entries) {
+        int size = 16;
+        while(size * LOAD_FACTOR < entries) {
+            size *= 2;
+        }
+        return size;
+    }
+
+    private static class Table {
+        final long[] keys;
+        final AtomicReferenceArray<Object> values;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    private class ValueIterator implements Iterator<V> {
+        private final Table table;
+        private int index = -1;
+        private Object next;
+
+        ValueIterator(Table table) {
+            this.table = table;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if(next == null)
+                throw new NoSuchElementException();
+            V value = (V) next;
+            advance();
+            return value;
+        }
+
+        private void advance() {
+            next = null;
+            while(++index < table.keys.length) {
+                Object value = table.values.get(index);
+                if(value != null && value != TOMBSTONE) {
+                    next = value;
+                    return;
+                }
+            }
+        }
+    }
+
+}
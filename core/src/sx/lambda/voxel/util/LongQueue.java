@@ -0,0 +1,72 @@
+package sx.lambda.voxel.util;
+
+import java.util.NoSuchElementException;
+
+/**
+ * FIFO queue of primitive longs, backed by a ring buffer that doubles in size when it fills up.
+ *
+ * Not thread safe.
+ */
+public class LongQueue {
+
+    private long[] elements;
+    private int head, size;
+
+    public LongQueue() {
+        this(256);
+    }
+
+    /**
+     * @param initialCapacity Amount of elements to make room for before growing. Rounded up to a power of two.
+     */
+    public LongQueue(int initialCapacity) {
+        int capacity = 2;
+        while(capacity < initialCapacity) {
+            capacity *= 2;
+        }
+        elements = new long[capacity];
+    }
+
+    public void add(long value) {
+        if(size == elements.length)
+            grow();
+        elements[(head + size) & (elements.length - 1)] = value;
+        size++;
+    }
+
+    /**
+     * Remove and return the oldest element
+     * @throws NoSuchElementException If the queue is empty
+     */
+    public long poll() {
+        if(size == 0)
+            throw new NoSuchElementException();
+        long value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        long[] grown = new long[elements.length * 2];
+        int firstRun = elements.length - head;
+        System.arraycopy(elements, head, grown, 0, firstRun);
+        System.arraycopy(elements, 0, grown, firstRun, head);
+        elements = grown;
+        head = 0;
+    }
+
+}
@@ -1,24 +1,23 @@
 package sx.lambda.voxel.world;
 
+import sx.lambda.voxel.block.Block;
 import sx.lambda.voxel.world.chunk.BlockStorage.CoordinatesOutOfBoundsException;
 import sx.lambda.voxel.world.chunk.IChunk;
 
-import java.util.Queue;
+class BlocklightPropagator extends LightPropagator {
 
-public class BlocklightQueueWorker extends LightQueueWorker {
+    public BlocklightPropagator(IWorld world, LightingEngine engine) {
+        super(world, engine, LightingEngine.BLOCKLIGHT, true);
+    }
 
-    public BlocklightQueueWorker(IWorld world, Queue<int[]> lightUpdateQueue) {
-        super(world, lightUpdateQueue, true);
+    @Override
+    protected int getEmittedLight(Block block) {
+        return block == null ? 0 : block.getLightValue();
     }
 
     @Override
     protected int getLight(IChunk c, int cx, int cy, int cz) {
-        try {
-            return c.getBlocklight(cx, cy, cz);
-        } catch (CoordinatesOutOfBoundsException e) {
-            e.printStackTrace();
-            return 0;
-        }
+        return c.getBlocklightUnchecked(cx, cy, cz);
     }
 
     @Override
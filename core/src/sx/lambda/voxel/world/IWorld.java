@@ -1,5 +1,6 @@
 package sx.lambda.voxel.world;
 
+import sx.lambda.voxel.client.render.ChunkRenderer;
 import sx.lambda.voxel.entity.Entity;
 import sx.lambda.voxel.entity.EntityPosition;
 import sx.lambda.voxel.util.Vec3i;
@@ -54,8 +55,17 @@ public interface IWorld {
 
     void addEntity(int entityId, Entity e);
 
+    /**
+     * Queue every section of the chunk to be meshed again
+     */
     void rerenderChunk(IChunk c);
 
+    /**
+     * Queue some of the sections of the chunk to be meshed again
+     * @param sectionMask Bit mask of the 16-high sections, bit n covering y from n*16 to n*16+15
+     */
+    void rerenderChunk(IChunk c, int sectionMask);
+
     int getChunkPosition(float value);
 
     ChunkGenerator getChunkGen();
@@ -72,11 +82,26 @@ public interface IWorld {
      */
     void addToBlocklightQueue(int x, int y, int z);
 
+    /**
+     * Set the blocklight at a position and spread it, if it's brighter than what's already there.
+     * The light is written by the lighting workers, like every other light change.
+     */
+    void addToBlocklightQueue(int x, int y, int z, int level);
+
     /**
      * Add a position to the sunlight removal queue
      */
     void addToSunlightRemovalQueue(int x, int y, int z);
 
+    /**
+     * Add a position to the blocklight removal queue
+     * Light at the position and everything lit by it is cleared, then filled back in from the light around it.
+     */
+    void addToBlocklightRemovalQueue(int x, int y, int z);
+
+    /**
+     * Finish up light changes that the lighting workers are done with. Called from the render thread.
+     */
     void processLightQueue();
 
     void cleanup();
@@ -86,13 +111,15 @@ public interface IWorld {
     void rmChunk(IChunk chunk);
     /**
      * Add to the queue of chunk meshing.
-     * This queue may be processed on another thread, so shouldn't do any GL stuff.
+     * This queue is processed on other threads, so shouldn't do any GL stuff.
+     * A chunk is only queued once, adding it again while it's still waiting replaces the method it was queued with.
      *
      * This method is for internal use by chunks!
      *
+     * @param chunk Chunk being meshed
      * @param updateFaces Method that generates the mesh
      */
-    void addToMeshQueue(Runnable updateFaces);
+    void addToMeshQueue(IChunk chunk, Runnable updateFaces);
 
     /**
      * Add to the queue of chunks to upload.
@@ -105,4 +132,11 @@ public interface IWorld {
      */
     void addToChunkUploadQueue(Runnable upload);
 
+    /**
+     * Get the renderer that holds chunk geometry on the GPU. Only usable on the main thread.
+     *
+     * @return The renderer, or null if the world hasn't been rendered yet
+     */
+    ChunkRenderer getChunkRenderer();
+
 }
@@ -0,0 +1,248 @@
+package sx.lambda.voxel.world;
+
+import sx.lambda.voxel.block.Block;
+import sx.lambda.voxel.block.Side;
+import sx.lambda.voxel.util.LongQueue;
+import sx.lambda.voxel.world.chunk.IChunk;
+
+import java.util.List;
+
+/**
+ * Flood fills one type of light through the region that a {@link LightingEngine} worker currently owns.
+ *
+ * Light is only ever written inside the region being processed. When light would spread across the region border,
+ * it's offered to the neighboring region instead, which decides whether to take it once one of its own workers gets to it.
+ *
+ * Removing light is done in two passes. The first darkens every block that was lit by the removed light,
+ * and collects the lit blocks around the darkened area. The second spreads light back in from those blocks.
+ * Light sources caught in the darkened area get their own light back right away and spread it in the second pass.
+ */
+abstract class LightPropagator {
+
+    private final IWorld world;
+    private final LightingEngine engine;
+    private final int channel;
+    private final Side[] sides;
+    private final boolean decayDown;
+
+    /**
+     * @param world World that light is updating in
+     * @param engine Engine to hand light crossing region borders to
+     * @param channel Type of light this propagates, one of the channel constants in LightingEngine
+     * @param decayDown Whether light should decay when heading down and at full brightness.
+     *                  This should be set to false for sunlight since sunlight doesn't decay when heading down at max brightness.
+     */
+    public LightPropagator(IWorld world, LightingEngine engine, int channel, boolean decayDown) {
+        this.world = world;
+        this.engine = engine;
+        this.channel = channel;
+        this.sides = Side.values();
+        this.decayDown = decayDown;
+    }
+
+    /**
+     * Process light updates until there are none left in the region
+     * @param removals Removal updates inside the region to process. Removals spreading from these are added to it as well.
+     * @param spreads Spread updates inside the region to process, after all of the removals are done.
+     *                Spreads from these, and from the edges of the removed light, are added to it as well.
+     * @param changedChunks Chunks that had their light changed get added to this if they're not already in it
+     */
+    public void propagate(LongQueue removals, LongQueue spreads, List<IChunk> changedChunks) {
+        while (!removals.isEmpty()) {
+            long update = removals.poll();
+            int x = LightingEngine.unpackX(update);
+            int y = LightingEngine.unpackY(update);
+            int z = LightingEngine.unpackZ(update);
+
+            IChunk posChunk = world.getChunk(x, z);
+            if (posChunk == null)
+                continue;
+            int chunkSize = world.getChunkSize();
+            int cx = x & (chunkSize - 1);
+            int cz = z & (chunkSize - 1);
+
+            int oldLL = LightingEngine.unpackLevel(update);
+            if (LightingEngine.unpackKind(update) == LightingEngine.REMOVE_OFFER) {
+                // Neighboring region darkened the block next to this one, see whether that light was coming from there
+                removeOrRestore(removals, spreads, changedChunks, posChunk, x, y, z, cx, cz, oldLL, false);
+                continue;
+            }
+            if (oldLL == 0) {
+                // Start of a removal, the light here hasn't been darkened yet
+                oldLL = getLight(posChunk, cx, y, cz);
+                if (oldLL == 0)
+                    continue;
+                writeLight(changedChunks, posChunk, cx, y, cz, 0);
+                relight(spreads, changedChunks, posChunk, x, y, z, cx, cz);
+            }
+
+            for (Side s : sides) {
+                int sx = x + offsetX(s);
+                int sy = y + offsetY(s);
+                int sz = z + offsetZ(s);
+                if (sy < 0 || sy > world.getHeight() - 1)
+                    continue;
+
+                if (!engine.isSameRegion(x, z, sx, sz)) {
+                    engine.post(channel, LightingEngine.pack(sx, sy, sz, oldLL, LightingEngine.REMOVE_OFFER));
+                    continue;
+                }
+
+                IChunk sChunk = posChunk.getChunkContaining(cx + offsetX(s), cz + offsetZ(s));
+                if (sChunk == null)
+                    continue;
+                removeOrRestore(removals, spreads, changedChunks, sChunk, sx, sy, sz, sx & (chunkSize - 1), sz & (chunkSize - 1),
+                        oldLL, !decayDown && s == Side.BOTTOM);
+            }
+        }
+
+        while (!spreads.isEmpty()) {
+            long update = spreads.poll();
+            int x = LightingEngine.unpackX(update);
+            int y = LightingEngine.unpackY(update);
+            int z = LightingEngine.unpackZ(update);
+
+            IChunk posChunk = world.getChunk(x, z);
+            if (posChunk == null)
+                continue;
+            int chunkSize = world.getChunkSize();
+            // cx and cz are relative to the chunk
+            int cx = x & (chunkSize - 1);
+            int cz = z & (chunkSize - 1);
+
+            int ll;
+            if (LightingEngine.unpackKind(update) == LightingEngine.OFFER) {
+                // Light coming in from another region or a new light source, only take it if it's brighter than what's here.
+                // Blocks that light can't pass only take their own light.
+                ll = LightingEngine.unpackLevel(update);
+                Block block = posChunk.getBlockUnchecked(cx, y, cz);
+                if ((!lightPasses(block) && getEmittedLight(block) < ll) || getLight(posChunk, cx, y, cz) >= ll)
+                    continue;
+                writeLight(changedChunks, posChunk, cx, y, cz, ll);
+            } else {
+                ll = getLight(posChunk, cx, y, cz);
+            }
+
+            spread(spreads, changedChunks, posChunk, x, y, z, cx, cz, ll);
+        }
+    }
+
+    /**
+     * Darken a block next to one that had its light removed if its light came from that block,
+     * otherwise queue it to spread its light back into the darkened area
+     * @param oldLL Light level the darkened block had
+     * @param fullStrengthBelow True if the block is below the darkened block and light doesn't decay heading down
+     */
+    private void removeOrRestore(LongQueue removals, LongQueue spreads, List<IChunk> changedChunks,
+                                 IChunk c, int x, int y, int z, int cx, int cz, int oldLL, boolean fullStrengthBelow) {
+        if (!lightPasses(c.getBlockUnchecked(cx, y, cz)))
+            return;
+        int ll = getLight(c, cx, y, cz);
+        if (ll == 0)
+            return;
+        if (ll < oldLL || (fullStrengthBelow && oldLL == c.getMaxLightLevel() && ll == oldLL)) {
+            writeLight(changedChunks, c, cx, y, cz, 0);
+            removals.add(LightingEngine.pack(x, y, z, ll, LightingEngine.REMOVE));
+            relight(spreads, changedChunks, c, x, y, z, cx, cz);
+        } else {
+            spreads.add(LightingEngine.pack(x, y, z, 0, LightingEngine.SPREAD));
+        }
+    }
+
+    /**
+     * Give a darkened block its own light back if it's a light source, and queue it to spread once removal is done
+     */
+    private void relight(LongQueue spreads, List<IChunk> changedChunks, IChunk c, int x, int y, int z, int cx, int cz) {
+        int emitted = getEmittedLight(c.getBlockUnchecked(cx, y, cz));
+        if (emitted > 0) {
+            writeLight(changedChunks, c, cx, y, cz, emitted);
+            spreads.add(LightingEngine.pack(x, y, z, 0, LightingEngine.SPREAD));
+        }
+    }
+
+    /**
+     * Spread light from a position to each side of it
+     */
+    private void spread(LongQueue spreads, List<IChunk> changedChunks, IChunk posChunk, int x, int y, int z, int cx, int cz, int ll) {
+        int chunkSize = world.getChunkSize();
+        for (Side s : sides) {
+            int nextLL = ll - 1; // Decayed light level for the spread
+            int sx = x + offsetX(s); // Side x coord
+            int sy = y + offsetY(s); // Side y coord
+            int sz = z + offsetZ(s); // Side z coord
+            int scx = cx + offsetX(s); // Chunk-relative side x coord
+            int scz = cz + offsetZ(s); // Chunk-relative side z coord
+            IChunk sChunk = posChunk;
+
+            if (sy < 0)
+                continue;
+            if (sy > world.getHeight() - 1)
+                continue;
+
+            // When spreading down, lighting at max level does not decay
+            if (!decayDown && s == Side.BOTTOM) {
+                Block block = posChunk.getBlockUnchecked(cx, y, cz); // Block being spread from
+                if (ll == posChunk.getMaxLightLevel() && (block == null || block.decreasesLight()))
+                    nextLL = posChunk.getMaxLightLevel();
+            }
+            if (nextLL <= 0)
+                continue;
+
+            if (!engine.isSameRegion(x, z, sx, sz)) {
+                engine.post(channel, LightingEngine.pack(sx, sy, sz, nextLL, LightingEngine.OFFER));
+                continue;
+            }
+
+            // Select the correct chunk
+            if (scx < 0 || scx > chunkSize - 1 || scz < 0 || scz > chunkSize - 1) {
+                sChunk = posChunk.getChunkContaining(scx, scz);
+                scx &= chunkSize - 1;
+                scz &= chunkSize - 1;
+            }
+
+            if (sChunk == null)
+                continue;
+
+            // Spread lighting
+            if (lightPasses(sChunk.getBlockUnchecked(scx, sy, scz))) {
+                if (getLight(sChunk, scx, sy, scz) < nextLL) {
+                    writeLight(changedChunks, sChunk, scx, sy, scz, nextLL);
+                    spreads.add(LightingEngine.pack(sx, sy, sz, 0, LightingEngine.SPREAD));
+                }
+            }
+        }
+    }
+
+    private void writeLight(List<IChunk> changedChunks, IChunk c, int cx, int cy, int cz, int newLight) {
+        setLight(c, cx, cy, cz, newLight);
+        // Writes only ever land in the 16 or so chunks of one region, so a linear scan is plenty
+        if (!changedChunks.contains(c))
+            changedChunks.add(c);
+    }
+
+    private static boolean lightPasses(Block block) {
+        return block == null || block.doesLightPassThrough() || !block.decreasesLight();
+    }
+
+    private static int offsetX(Side s) {
+        return s == Side.EAST ? 1 : s == Side.WEST ? -1 : 0;
+    }
+
+    private static int offsetY(Side s) {
+        return s == Side.TOP ? 1 : s == Side.BOTTOM ? -1 : 0;
+    }
+
+    private static int offsetZ(Side s) {
+        return s == Side.NORTH ? 1 : s == Side.SOUTH ? -1 : 0;
+    }
+
+    /**
+     * @return Light of this type that the block gives off on its own
+     */
+    protected abstract int getEmittedLight(Block block);
+
+    protected abstract int getLight(IChunk c, int cx, int cy, int cz);
+
+    protected abstract void setLight(IChunk c, int cx, int cy, int cz, int newLight);
+
+}
@@ -0,0 +1,436 @@
+package sx.lambda.voxel.world;
+
+import sx.lambda.voxel.api.RadixAPI;
+import sx.lambda.voxel.block.Block;
+import sx.lambda.voxel.util.ConcurrentLongMap;
+import sx.lambda.voxel.util.LongQueue;
+import sx.lambda.voxel.world.chunk.BlockStorage.CoordinatesOutOfBoundsException;
+import sx.lambda.voxel.world.chunk.IChunk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads sunlight and blocklight on a pool of worker threads.
+ *
+ * The world is split into regions of {@link #REGION_SIZE}x{@link #REGION_SIZE} chunks, each with its own inbox of light updates.
+ * A region is processed by at most one worker at a time, and that worker is the only thread the engine lets write light into the region.
+ * Light crossing into another region is posted to that region's inbox as an offer, and the other region picks it up on its own worker.
+ *
+ * Nothing here runs on the render thread. Chunks that had their light changed are handed back through {@link #pollChangedChunk()}
+ * once all queued work is done, so they can be rerendered with finished lighting.
+ *
+ * Light updates are packed into longs. From the top bit down: 25 bits of x, 25 bits of z, 8 bits of y, 4 bits of light level, 2 bits of update kind.
+ */
+class LightingEngine {
+
+    public static final int SUNLIGHT = 0, BLOCKLIGHT = 1;
+    private static final int CHANNELS = 2;
+
+    /**
+     * Light at the position has already been set, spread it from there
+     */
+    public static final int SPREAD = 0;
+    /**
+     * Light coming from a neighboring region or a new light source, set it at the position and spread it if it's brighter than what's already there
+     */
+    public static final int OFFER = 1;
+    /**
+     * Light at the position was darkened from the level in the update, darken whatever it lit and spread light back in from the edges.
+     * A level of 0 means the position still needs to be darkened, which is how removals start.
+     */
+    public static final int REMOVE = 2;
+    /**
+     * A neighboring region darkened the block next to the position from the level in the update,
+     * darken the position if its light came from there
+     */
+    public static final int REMOVE_OFFER = 3;
+
+    private static final int[][] HORIZONTAL_OFFSETS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+
+    /**
+     * Width of a region, in chunks
+     */
+    private static final int REGION_SIZE = 4;
+
+    private final IWorld world;
+    private final ForkJoinPool pool;
+    private final ConcurrentLongMap<Region> regions = new ConcurrentLongMap<>();
+    private final LightPropagator[] propagators;
+    /**
+     * log2 of the region width in blocks
+     */
+    private final int regionShift;
+    /**
+     * Regions that are waiting on or being processed by a worker
+     */
+    private final AtomicInteger scheduledRegions = new AtomicInteger();
+    /**
+     * Queue for each worker thread to flood fill through, reused between regions
+     */
+    private final ThreadLocal<LongQueue> pendingRemovals = ThreadLocal.withInitial(() -> new LongQueue(1024));
+    private final ThreadLocal<LongQueue> pendingSpreads = ThreadLocal.withInitial(() -> new LongQueue(4096));
+    /**
+     * Chunks that had their light changed since the last time the engine was idle
+     */
+    private final Queue<IChunk> changedChunks = new ConcurrentLinkedQueue<>();
+
+    public LightingEngine(IWorld world) {
+        this.world = world;
+        this.regionShift = Integer.numberOfTrailingZeros(world.getChunkSize() * REGION_SIZE);
+        this.propagators = new LightPropagator[CHANNELS];
+        this.propagators[SUNLIGHT] = new SunlightPropagator(world, this);
+        this.propagators[BLOCKLIGHT] = new BlocklightPropagator(world, this);
+        // Leave a core for the render thread
+        this.pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public static long pack(int x, int y, int z, int level, int kind) {
+        return ((long) x & 0x1FFFFFF) << 39 | ((long) z & 0x1FFFFFF) << 14 | (y & 0xFF) << 6 | (level & 0xF) << 2 | (kind & 0x3);
+    }
+
+    public static int unpackX(long update) {
+        return (int) (update >> 39);
+    }
+
+    public static int unpackY(long update) {
+        return (int) (update >>> 6) & 0xFF;
+    }
+
+    public static int unpackZ(long update) {
+        return (int) (update << 25 >> 39);
+    }
+
+    public static int unpackLevel(long update) {
+        return (int) (update >>> 2) & 0xF;
+    }
+
+    public static int unpackKind(long update) {
+        return (int) update & 0x3;
+    }
+
+    /**
+     * Spread sunlight that has already been set at a position
+     */
+    public void addSunlight(int x, int y, int z) {
+        post(SUNLIGHT, pack(x, y, z, 0, SPREAD));
+    }
+
+    /**
+     * Spread blocklight that has already been set at a position
+     */
+    public void addBlocklight(int x, int y, int z) {
+        post(BLOCKLIGHT, pack(x, y, z, 0, SPREAD));
+    }
+
+    /**
+     * Set the blocklight at a position and spread it, if it's brighter than what's already there
+     */
+    public void addBlocklight(int x, int y, int z, int level) {
+        post(BLOCKLIGHT, pack(x, y, z, level, OFFER));
+    }
+
+    /**
+     * Darken the sunlight at a position along with everything it lit, then fill the area back in from surrounding light
+     */
+    public void removeSunlight(int x, int y, int z) {
+        post(SUNLIGHT, pack(x, y, z, 0, REMOVE));
+    }
+
+    /**
+     * Darken the blocklight at a position along with everything it lit, then fill the area back in from surrounding light.
+     * If the block at the position is a light source, its own light is put back once the old light is cleared.
+     */
+    public void removeBlocklight(int x, int y, int z) {
+        post(BLOCKLIGHT, pack(x, y, z, 0, REMOVE));
+    }
+
+    /**
+     * Give a chunk its initial sunlight and blocklight on a lighting worker
+     */
+    public void lightChunk(IChunk c) {
+        Region region = getRegion(c.getStartPosition().x >> regionShift, c.getStartPosition().z >> regionShift);
+        region.chunksToLight.add(c);
+        schedule(region);
+    }
+
+    /**
+     * Add a light update to the inbox of the region it's in, and get a worker on the region if there isn't one already
+     * @param channel SUNLIGHT or BLOCKLIGHT
+     * @param update Packed light update
+     */
+    public void post(int channel, long update) {
+        int x = unpackX(update);
+        int z = unpackZ(update);
+        if (world.getChunk(x, z) == null)
+            return; // Nothing to light
+
+        Region region = getRegion(x >> regionShift, z >> regionShift);
+        region.add(channel, update);
+        schedule(region);
+    }
+
+    /**
+     * @return True if both positions are in the same region
+     */
+    public boolean isSameRegion(int x1, int z1, int x2, int z2) {
+        return (x1 >> regionShift) == (x2 >> regionShift) && (z1 >> regionShift) == (z2 >> regionShift);
+    }
+
+    /**
+     * @return True if there are no light updates queued or in progress
+     */
+    public boolean isIdle() {
+        return scheduledRegions.get() == 0;
+    }
+
+    /**
+     * Take the next chunk that had its light changed, as long as there is no lighting work left that could still change it
+     * @return Chunk, or null if there are none or lighting is still in progress
+     */
+    public IChunk pollChangedChunk() {
+        if (!isIdle())
+            return null;
+        return changedChunks.poll();
+    }
+
+    /**
+     * Drop the region containing a chunk that was unloaded, if none of the region's other chunks are loaded.
+     * The region is only closed here, its worker drops it once it has nothing left to do.
+     */
+    public void chunkUnloaded(int x, int z) {
+        int rx = x >> regionShift;
+        int rz = z >> regionShift;
+        int regionWidth = 1 << regionShift;
+        int chunkSize = world.getChunkSize();
+        synchronized (regions) {
+            for (int ox = 0; ox < regionWidth; ox += chunkSize) {
+                for (int oz = 0; oz < regionWidth; oz += chunkSize) {
+                    if (world.getChunk((rx << regionShift) + ox, (rz << regionShift) + oz) != null)
+                        return;
+                }
+            }
+            Region region = regions.get(getRegionKey(rx, rz));
+            if (region == null)
+                return;
+            region.closed = true;
+            // Get a worker on it even if it's idle, it's removed at the end of the run
+            schedule(region);
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void schedule(Region region) {
+        if (region.scheduled.compareAndSet(false, true)) {
+            scheduledRegions.incrementAndGet();
+            pool.execute(region);
+        }
+    }
+
+    /**
+     * Set sunlight for the open sky in a chunk and blocklight for the light sources in it, and queue both to spread
+     * @param region Region the chunk is in
+     */
+    private void setupLighting(Region region, IChunk c) {
+        int chunkSize = world.getChunkSize();
+        int height = world.getHeight();
+        int startX = c.getStartPosition().x;
+        int startY = c.getStartPosition().y;
+        int startZ = c.getStartPosition().z;
+        try {
+            // Sections made of a single block that doesn't emit light can't contain any light sources, don't bother scanning them
+            boolean[] skipSection = new boolean[(height + 15) / 16];
+            for (int i = 0; i < skipSection.length; i++) {
+                int state = c.getUniformBlockState(i);
+                if (state == 0) {
+                    skipSection[i] = true;
+                } else if (state > 0) {
+                    Block blk = RadixAPI.instance.getBlock(state >> 4);
+                    skipSection[i] = blk == null || blk.getLightValue() == 0;
+                }
+            }
+
+            for (int z = 0; z < chunkSize; z++) {
+                for (int x = 0; x < chunkSize; x++) {
+                    int highest = c.getHighestBlock(x, z);
+
+                    // Everything above the highest block is open sky
+                    for (int sy = highest + 1; sy < height; sy++) {
+                        c.setSunlight(x, sy, z, c.getMaxLightLevel());
+                    }
+
+                    // Only the sky right above the column and next to taller columns can spread anywhere new,
+                    // down into the top block or sideways under neighboring overhangs
+                    int spreadTop = Math.min(height - 1, Math.max(highest + 1, getHighestNeighborBlock(c, x, z)));
+                    for (int sy = highest + 1; sy <= spreadTop; sy++) {
+                        region.add(SUNLIGHT, pack(startX + x, sy, startZ + z, 0, SPREAD));
+                    }
+
+                    for (int cy = 0; cy <= highest; cy++) {
+                        if (skipSection[cy / 16]) {
+                            cy |= 15; // Last layer of the section, loop increment moves past it
+                            continue;
+                        }
+                        int id = c.getBlockIdUnchecked(x, cy, z);
+                        if (id > 0) {
+                            Block blk = RadixAPI.instance.getBlock(id);
+                            if (blk.getLightValue() > 0) {
+                                c.setBlocklight(x, cy, z, blk.getLightValue());
+                                region.add(BLOCKLIGHT, pack(startX + x, startY + cy, startZ + z, 0, SPREAD));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (CoordinatesOutOfBoundsException ex) {
+            ex.printStackTrace();
+        }
+        c.finishAddingSun();
+    }
+
+    /**
+     * @return Highest block in the four columns next to the column, including columns in neighboring chunks if they're loaded
+     */
+    private int getHighestNeighborBlock(IChunk c, int x, int z) {
+        int chunkSize = world.getChunkSize();
+        int highest = -1;
+        for (int[] offset : HORIZONTAL_OFFSETS) {
+            int nx = x + offset[0];
+            int nz = z + offset[1];
+            IChunk neighbor = c.getChunkContaining(nx, nz);
+            if (neighbor != null) {
+                highest = Math.max(highest, neighbor.getHighestBlock(nx & (chunkSize - 1), nz & (chunkSize - 1)));
+            }
+        }
+        return highest;
+    }
+
+    private Region getRegion(int rx, int rz) {
+        long key = getRegionKey(rx, rz);
+        Region region = regions.get(key);
+        if (region == null || region.closed) {
+            synchronized (regions) {
+                region = regions.get(key);
+                if (region == null) {
+                    region = new Region(key);
+                    regions.put(key, region);
+                }
+                // A chunk in it was loaded again before its worker got to drop it, keep using it
+                region.closed = false;
+            }
+        }
+        return region;
+    }
+
+    private static long getRegionKey(int rx, int rz) {
+        return (long) rx << 32 | (rz & 0xFFFFFFFFL);
+    }
+
+    private class Region implements Runnable {
+        private final long key;
+        private final LongQueue[] inboxes = new LongQueue[CHANNELS];
+        private final Queue<IChunk> chunksToLight = new ConcurrentLinkedQueue<>();
+        /**
+         * Chunks in the region changed during the current run
+         */
+        private final List<IChunk> changedInRegion = new ArrayList<>();
+        /**
+         * Set while the region is waiting on or being processed by a worker
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        /**
+         * Set once none of the region's chunks are loaded, the region is dropped by its worker when it runs out of updates
+         */
+        private volatile boolean closed;
+
+        Region(long key) {
+            this.key = key;
+            for (int i = 0; i < CHANNELS; i++) {
+                inboxes[i] = new LongQueue(16);
+            }
+        }
+
+        void add(int channel, long update) {
+            LongQueue inbox = inboxes[channel];
+            synchronized (inbox) {
+                inbox.add(update);
+            }
+        }
+
+        boolean hasUpdates() {
+            if (!chunksToLight.isEmpty())
+                return true;
+            for (LongQueue inbox : inboxes) {
+                synchronized (inbox) {
+                    if (!inbox.isEmpty())
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            LongQueue removals = pendingRemovals.get();
+            LongQueue spreads = pendingSpreads.get();
+            try {
+                do {
+                    IChunk toLight;
+                    while ((toLight = chunksToLight.poll()) != null) {
+                        setupLighting(this, toLight);
+                        if (!changedInRegion.contains(toLight))
+                            changedInRegion.add(toLight);
+                    }
+
+                    for (int channel = 0; channel < CHANNELS; channel++) {
+                        LongQueue inbox = inboxes[channel];
+                        synchronized (inbox) {
+                            while (!inbox.isEmpty()) {
+                                long update = inbox.poll();
+                                int kind = unpackKind(update);
+                                if (kind == REMOVE || kind == REMOVE_OFFER) {
+                                    removals.add(update);
+                                } else {
+                                    spreads.add(update);
+                                }
+                            }
+                        }
+                        propagators[channel].propagate(removals, spreads, changedInRegion);
+                    }
+                    changedChunks.addAll(changedInRegion);
+                    changedInRegion.clear();
+                    scheduled.set(false);
+                    // Anything posted after the inboxes were drained either rescheduled us already, or is picked up here
+                } while (hasUpdates() && scheduled.compareAndSet(false, true));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                removals.clear();
+                spreads.clear();
+                changedChunks.addAll(changedInRegion);
+                changedInRegion.clear();
+                scheduled.set(false);
+                if (hasUpdates() && scheduled.compareAndSet(false, true)) {
+                    pool.execute(this);
+                    return;
+                }
+            }
+            if (closed) {
+                synchronized (regions) {
+                    // Updates for chunks that aren't loaded are never posted, and loading one reopens the region or makes a new one
+                    if (closed && !hasUpdates() && regions.get(key) == this)
+                        regions.remove(key);
+                }
+            }
+            scheduledRegions.decrementAndGet();
+        }
+    }
+
+}
@@ -1,24 +1,23 @@
 package sx.lambda.voxel.world;
 
+import sx.lambda.voxel.block.Block;
 import sx.lambda.voxel.world.chunk.BlockStorage.CoordinatesOutOfBoundsException;
 import sx.lambda.voxel.world.chunk.IChunk;
 
-import java.util.Queue;
+class SunlightPropagator extends LightPropagator {
 
-public class SunlightQueueWorker extends LightQueueWorker {
+    public SunlightPropagator(IWorld world, LightingEngine engine) {
+        super(world, engine, LightingEngine.SUNLIGHT, false);
+    }
 
-    public SunlightQueueWorker(IWorld world, Queue<int[]> lightUpdateQueue) {
-        super(world, lightUpdateQueue, false);
+    @Override
+    protected int getEmittedLight(Block block) {
+        return 0;
     }
 
     @Override
     protected int getLight(IChunk c, int cx, int cy, int cz) {
-        try {
-            return c.getSunlight(cx, cy, cz);
-        } catch (CoordinatesOutOfBoundsException e) {
-            e.printStackTrace();
-            return 0;
-        }
+        return c.getSunlightUnchecked(cx, cy, cz);
     }
 
     @Override
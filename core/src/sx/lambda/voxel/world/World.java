@@ -1,6 +1,7 @@
 package sx.lambda.voxel.world;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Mesh;
 import com.badlogic.gdx.graphics.Texture;
@@ -13,20 +14,26 @@ import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
 import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
 import com.badlogic.gdx.graphics.g3d.utils.MeshPartBuilder;
 import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
+import com.badlogic.gdx.math.Frustum;
 import com.badlogic.gdx.math.MathUtils;
-import com.badlogic.gdx.utils.IntMap;
 import sx.lambda.voxel.RadixClient;
 import sx.lambda.voxel.api.RadixAPI;
 import sx.lambda.voxel.api.events.worldgen.EventFinishChunkGen;
-import sx.lambda.voxel.block.Block;
-import sx.lambda.voxel.block.Side;
+import sx.lambda.voxel.block.RenderLayer;
+import sx.lambda.voxel.client.render.CaveCuller;
+import sx.lambda.voxel.client.render.ChunkRenderer;
+import sx.lambda.voxel.client.render.FrustumCuller;
+import sx.lambda.voxel.client.render.OcclusionCuller;
+import sx.lambda.voxel.client.render.meshing.ChunkSnapshot;
 import sx.lambda.voxel.entity.Entity;
 import sx.lambda.voxel.entity.EntityPosition;
+import sx.lambda.voxel.settings.configs.VisualSettings;
+import sx.lambda.voxel.util.ConcurrentLongMap;
 import sx.lambda.voxel.util.Vec3i;
 import sx.lambda.voxel.world.chunk.BlockStorage.CoordinatesOutOfBoundsException;
 import sx.lambda.voxel.world.chunk.Chunk;
 import sx.lambda.voxel.world.chunk.IChunk;
-import sx.lambda.voxel.world.chunk.MeshQueueWorker;
+import sx.lambda.voxel.world.chunk.MeshScheduler;
 import sx.lambda.voxel.world.generation.ChunkGenerator;
 import sx.lambda.voxel.world.generation.SimplexChunkGenerator;
 
@@ -37,38 +44,44 @@ public class World implements IWorld {
 
     private static final int CHUNK_SIZE = 16; // SHOULD ALWAYS BE 2^x
     private static final int WORLD_HEIGHT = 256;
+    private static final int ALL_SECTIONS = -1;
     private static final int SEA_LEVEL = 64;
     private static final float GRAVITY = 32f;
     private static final float TERMINAL_VELOCITY = 78.4f;
 
-    /**
-     * The amount of lighting workers to have per light type (sunlight and blocklight)
-     */
-    private static final int LIGHTING_WORKERS = 2;
-
-    private final IntMap<IChunk> chunkMap = new IntMap<>();
-    private final Queue<IChunk> chunksToRerender = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLongMap<IChunk> chunkMap = new ConcurrentLongMap<>();
+    // A set, so a chunk that gets changed many times before its rerender is still only rerendered once
+    private final Set<IChunk> chunksToRerender = ConcurrentHashMap.newKeySet();
 
     private final boolean remote, server;
     private final ChunkGenerator chunkGen;
     private final ConcurrentHashMap<Integer, Entity> loadedEntities = new ConcurrentHashMap<>();
 
     // Light-related stuff
-    private final ExecutorService sunlightPoolExecutor = Executors.newFixedThreadPool(LIGHTING_WORKERS);
-    private final ExecutorService blocklightPoolExecutor = Executors.newFixedThreadPool(LIGHTING_WORKERS);
-    private final Queue<int[]> sunlightQueue = new LinkedBlockingQueue<>();
-    private final Queue<int[]> sunlightRemovalQueue = new LinkedBlockingQueue<>();
-    private final Queue<int[]> blocklightQueue = new LinkedBlockingQueue<>();
+    private final LightingEngine lightingEngine;
 
     // Mesh related stuff
     // Manages meshing chunks off of the main thread
-    private final Queue<Runnable> chunkMeshQueue = new LinkedBlockingQueue<>();
-    // Manages uploading chunks on the gl thread
-    private final Queue<Runnable> chunkUploadQueue = new LinkedList<>();
+    private final MeshScheduler meshScheduler;
+    // Manages uploading chunks on the gl thread, chunks that are unloaded also get disposed through it
+    private final Queue<Runnable> chunkUploadQueue = new ConcurrentLinkedQueue<>();
+
+    // Chunk rendering
+    private ChunkRenderer chunkRenderer;
+    // Finds the chunks and sections in the frustum
+    private final FrustumCuller frustumCuller = new FrustumCuller();
+    // Skips sections that can't be seen from the camera, like caves seen from the surface
+    private final CaveCuller caveCuller = new CaveCuller();
+    // Skips chunks hidden behind hills and other terrain close to the camera
+    private final OcclusionCuller occlusionCuller = new OcclusionCuller();
+    // Visible chunks for the frame being drawn, kept around so it isn't allocated every frame
+    private final List<IChunk> visibleChunks = new ArrayList<>();
+    // Camera position that the translucent pass sorts by
+    private float sortX, sortZ;
+    private final Comparator<IChunk> backToFront = (a, b) -> Float.compare(distanceSquared(b), distanceSquared(a));
 
     // Skybox stuff
     private ModelBatch modelBatch;
-    private ModelBatch wiremeshBatch;
     private ModelInstance skybox;
     private Model skyboxModel;
     private Texture skyboxTexture;
@@ -82,14 +95,9 @@ public class World implements IWorld {
             this.chunkGen = null;
         }
 
-        for(int i = 0; i < LIGHTING_WORKERS; i++) {
-            sunlightPoolExecutor.submit(new SunlightQueueWorker(this, sunlightQueue));
-        }
-        for(int i = 0; i < LIGHTING_WORKERS; i++) {
-            blocklightPoolExecutor.submit(new BlocklightQueueWorker(this, blocklightQueue));
-        }
+        lightingEngine = new LightingEngine(this);
 
-        new MeshQueueWorker(chunkMeshQueue).start();
+        meshScheduler = new MeshScheduler(RadixClient.getInstance().getSettingsManager().getVisualSettings().getMeshThreads());
     }
 
     public int getChunkSize() {
@@ -104,20 +112,16 @@ public class World implements IWorld {
         return getChunk(position.x, position.z);
     }
 
-    private int getChunkKey(int x, int z) {
-        short nx = (short)Math.floorDiv(x, getChunkSize());
-        short nz = (short)Math.floorDiv(z, getChunkSize());
+    private long getChunkKey(int x, int z) {
+        long cx = Math.floorDiv(x, CHUNK_SIZE);
+        long cz = Math.floorDiv(z, CHUNK_SIZE);
 
-        return (nx << 16) | (nz & 0xFFFF);
+        return cx << 32 | (cz & 0xFFFFFFFFL);
     }
 
     @Override
     public IChunk getChunk(int x, int z) {
-        try {
-            return chunkMap.get(getChunkKey(x, z));
-        } catch(ArrayIndexOutOfBoundsException ex) {
-            return null;
-        }
+        return chunkMap.get(getChunkKey(x, z));
     }
 
     private void removeChunkFromMap(Vec3i pos) {
@@ -125,7 +129,30 @@ public class World implements IWorld {
     }
 
     private void removeChunkFromMap(int x, int z) {
-        chunkMap.remove(getChunkKey(x, z));
+        synchronized (chunkMap) {
+            IChunk removed = chunkMap.remove(getChunkKey(x, z));
+            if (removed == null)
+                return;
+
+            // Unlink from the neighbors, as long as they still point to the removed chunk
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    if (dx == 0 && dz == 0)
+                        continue;
+                    IChunk neighbor = removed.getNeighbor(dx, dz);
+                    if (neighbor != null && neighbor.getNeighbor(-dx, -dz) == removed) {
+                        neighbor.setNeighbor(-dx, -dz, null);
+                    }
+                    removed.setNeighbor(dx, dz, null);
+                }
+            }
+
+            if (!server) {
+                // Its geometry is in a region buffer that stays drawn until it's freed, and that has to happen on the gl thread
+                chunkUploadQueue.add(removed::dispose);
+            }
+        }
+        lightingEngine.chunkUnloaded(x, z);
     }
 
     @Override
@@ -134,7 +161,7 @@ public class World implements IWorld {
 
         if (modelBatch == null) {
             modelBatch = new ModelBatch(Gdx.files.internal("shaders/gdx/world.vert.glsl"), Gdx.files.internal("shaders/gdx/world.frag.glsl"));
-            wiremeshBatch = new ModelBatch(Gdx.files.internal("shaders/gdx/world.vert.glsl"), Gdx.files.internal("shaders/gdx/wiremesh.frag.glsl"));
+            chunkRenderer = new ChunkRenderer();
         }
         if(skybox == null) {
             skybox = createSkybox();
@@ -144,71 +171,82 @@ public class World implements IWorld {
 
         processLightQueue(); // If a chunk is doing its rerender, we want it to have the most recent lighting possible
 
-        {
-            Queue<IChunk> skippedChunks = new LinkedList<>(); // Chunks that didn't rerender and need to be added back to the queue after iteration
-            IChunk c;
-            while((c = chunksToRerender.poll()) != null) {
-                if(RadixClient.getInstance().getPlayer().getPosition().planeDistance(c.getStartPosition().x, c.getStartPosition().z) <=
-                        RadixClient.getInstance().getSettingsManager().getVisualSettings().getViewDistance() * CHUNK_SIZE) {
-                    c.rerender();
-                } else {
-                    skippedChunks.add(c); // Add back onto the queue
-                }
-            }
+        meshScheduler.update(RadixClient.getInstance().getCamera()); // Mesh what's close and on screen first
 
-            while((c = skippedChunks.poll()) != null) {
-                chunksToRerender.add(c);
+        // Chunks out of range stay in the set until they come into range
+        for(Iterator<IChunk> it = chunksToRerender.iterator(); it.hasNext(); ) {
+            IChunk c = it.next();
+            if(RadixClient.getInstance().getPlayer().getPosition().planeDistance(c.getStartPosition().x, c.getStartPosition().z) <=
+                    RadixClient.getInstance().getSettingsManager().getVisualSettings().getViewDistance() * CHUNK_SIZE) {
+                it.remove();
+                c.rerender();
             }
         }
 
         float playerX = RadixClient.getInstance().getPlayer().getPosition().getX(),
                 playerY = RadixClient.getInstance().getPlayer().getPosition().getY(),
                 playerZ = RadixClient.getInstance().getPlayer().getPosition().getZ();
-        boolean wireframe = RadixClient.getInstance().isWireframe();
-        if(wireframe) {
-            RadixClient.getInstance().setWireframe(false);
-        }
-        modelBatch.begin(RadixClient.getInstance().getCamera());
+        Camera camera = RadixClient.getInstance().getCamera();
+        modelBatch.begin(camera);
         skybox.transform.translate(playerX, playerY, playerZ);
         modelBatch.render(skybox);
         skybox.transform.translate(-playerX, -playerY, -playerZ);
-        if(chunkMap != null) {
-            List<IChunk> visibleChunks = new LinkedList<>();
-            for (IChunk c : chunkMap.values()) {
-                if(c == null)
-                    continue;
+        modelBatch.end();
 
-                int x = c.getStartPosition().x;
-                int z = c.getStartPosition().z;
-                int halfWidth = getChunkSize() / 2;
-                int midX = x + halfWidth;
-                int midZ = z + halfWidth;
-                int midY = c.getHighestPoint() / 2;
-                boolean visible = RadixClient.getInstance().getGameRenderer().getFrustum().boundsInFrustum(midX, midY, midZ, halfWidth, midY, halfWidth);
-                if (visible) {
-                    visibleChunks.add(c);
-                    c.render(modelBatch);
-                }
+        if(chunkMap != null) {
+            // Occluders draw on a worker while the rest of the culling happens here
+            boolean occlusionCulling = RadixClient.getInstance().getSettingsManager().getVisualSettings().getOcclusionCulling().getValue();
+            if(occlusionCulling) {
+                occlusionCuller.begin(this, camera);
             }
 
+            // Chunks past the view distance never get meshed, so there's no need to look any farther
+            Frustum frustum = RadixClient.getInstance().getGameRenderer().getFrustum();
+            int range = RadixClient.getInstance().getSettingsManager().getVisualSettings().getViewDistance() + 1;
+            frustumCuller.cull(this, camera.position, range, frustum, visibleChunks);
             for (IChunk c : visibleChunks) {
-                c.renderTranslucent(modelBatch);
+                c.prepareRender();
+            }
+            caveCuller.cull(this, camera.position, frustum, frustumCuller, visibleChunks);
+            if(occlusionCulling) {
+                occlusionCuller.cull(visibleChunks, caveCuller);
             }
-            modelBatch.end();
-            if(wireframe) {
-                RadixClient.getInstance().setWireframe(true);
+
+            // Each layer is drawn for every chunk before moving on to the next, so state only changes once per layer
+            chunkRenderer.begin(camera, false);
+            renderLayer(RenderLayer.OPAQUE);
+            chunkRenderer.setLayer(RenderLayer.CUTOUT);
+            renderLayer(RenderLayer.CUTOUT);
+            // Blended, so it has to go back to front
+            sortX = camera.position.x;
+            sortZ = camera.position.z;
+            visibleChunks.sort(backToFront);
+            chunkRenderer.setLayer(RenderLayer.TRANSLUCENT);
+            renderLayer(RenderLayer.TRANSLUCENT);
+            chunkRenderer.end();
+
+            if(RadixClient.getInstance().isWireframe()) {
                 Gdx.gl.glLineWidth(2);
-                wiremeshBatch.begin(RadixClient.getInstance().getCamera());
-                for (IChunk c : visibleChunks) {
-                    c.render(wiremeshBatch);
-                }
-                wiremeshBatch.end();
+                chunkRenderer.begin(camera, true);
+                renderLayer(RenderLayer.OPAQUE);
+                renderLayer(RenderLayer.CUTOUT);
+                chunkRenderer.end();
             }
-        } else {
-            modelBatch.end();
         }
     }
 
+    private void renderLayer(RenderLayer layer) {
+        for (IChunk c : visibleChunks) {
+            c.render(chunkRenderer, layer, caveCuller.getVisibleSections(c));
+        }
+    }
+
+    private float distanceSquared(IChunk c) {
+        float dx = c.getStartPosition().x + CHUNK_SIZE / 2f - sortX;
+        float dz = c.getStartPosition().z + CHUNK_SIZE / 2f - sortZ;
+        return dx * dx + dz * dz;
+    }
+
     @Override
     public void loadChunks(EntityPosition playerPosition, int viewDistance) {
         if (!remote) { //don't gen chunks if we're not local
@@ -287,26 +325,69 @@ public class World implements IWorld {
         }
         addChunk(chunk, chunk.getStartPosition().x, chunk.getStartPosition().z);
 
-        // Rerender neighbors
-        for(int x = chunk.getStartPosition().x - getChunkSize(); x <= chunk.getStartPosition().x + getChunkSize(); x += getChunkSize()) {
-            for (int z = chunk.getStartPosition().z - getChunkSize(); z <= chunk.getStartPosition().z + getChunkSize(); z += getChunkSize()) {
-                if(x == chunk.getStartPosition().x && z == chunk.getStartPosition().z)
+        // Rerender the neighbors, but only where the new chunk could have changed their border faces
+        for(int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if(dx == 0 && dz == 0)
                     continue;
-                IChunk neighbor = getChunk(x, z);
+                IChunk neighbor = chunk.getNeighbor(dx, dz);
                 if(neighbor != null) {
-                    rerenderChunk(neighbor);
+                    int sections = getBorderSectionsChanged(neighbor, chunk);
+                    if(sections != 0) {
+                        rerenderChunk(neighbor, sections);
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Get the sections of a chunk whose faces along the border can change now that a neighbor was loaded next to it.
+     *
+     * Where both sides of the border are solid opaque blocks, or both are empty, there are no faces along the border either way.
+     * Everything else is assumed to have changed, along with the sections above and below it since their faces take light from it.
+     */
+    private int getBorderSectionsChanged(IChunk chunk, IChunk added) {
+        int sectionCount = WORLD_HEIGHT / 16;
+        int changed = 0;
+        for (int section = 0; section < sectionCount; section++) {
+            int ours = chunk.getUniformBlockState(section);
+            int theirs = added.getUniformBlockState(section);
+            boolean bothEmpty = ours == 0 && theirs == 0;
+            boolean bothOpaque = ChunkSnapshot.isOpaqueState(ours) && ChunkSnapshot.isOpaqueState(theirs);
+            if (!bothEmpty && !bothOpaque) {
+                changed |= 1 << section;
+            }
+        }
+        return (changed | changed << 1 | changed >>> 1) & (1 << sectionCount) - 1;
+    }
+
     @Override
     public ConcurrentHashMap<Integer, Entity> getLoadedEntities() {
         return this.loadedEntities;
     }
 
     private void addChunk(IChunk chunk, int x, int z) {
-        this.chunkMap.put(getChunkKey(x, z), chunk);
+        synchronized (chunkMap) {
+            this.chunkMap.put(getChunkKey(x, z), chunk);
+
+            // Link up with the neighbors so that reads across chunk edges don't need to go through the map
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    if (dx == 0 && dz == 0)
+                        continue;
+                    IChunk neighbor = getChunk(x + dx * CHUNK_SIZE, z + dz * CHUNK_SIZE);
+                    chunk.setNeighbor(dx, dz, neighbor);
+                    if (neighbor != null) {
+                        neighbor.setNeighbor(-dx, -dz, chunk);
+                    }
+                }
+            }
+        }
+
+        if (!chunk.hasInitialSun()) {
+            lightingEngine.lightChunk(chunk);
+        }
     }
 
     private IChunk loadChunk(int startX, int startZ) {
@@ -328,8 +409,14 @@ public class World implements IWorld {
 
     @Override
     public void rerenderChunk(IChunk c) {
+        rerenderChunk(c, ALL_SECTIONS);
+    }
+
+    @Override
+    public void rerenderChunk(IChunk c, int sectionMask) {
         if(c == null)
             return;
+        c.markSectionsDirty(sectionMask);
         chunksToRerender.add(c);
     }
 
@@ -340,155 +427,48 @@ public class World implements IWorld {
 
     @Override
     public void addToSunlightQueue(int x, int y, int z) {
-        sunlightQueue.add(new int[]{x, y, z});
-        synchronized(sunlightQueue) {
-            sunlightQueue.notify();
-        }
+        lightingEngine.addSunlight(x, y, z);
     }
 
     @Override
     public void addToBlocklightQueue(int x, int y, int z) {
-        blocklightQueue.add(new int[]{x, y, z});
-        synchronized(blocklightQueue) {
-            blocklightQueue.notify();
-        }
+        lightingEngine.addBlocklight(x, y, z);
     }
 
     @Override
-    public void addToSunlightRemovalQueue(int x, int y, int z) {
-        sunlightRemovalQueue.add(new int[]{x, y, z});
+    public void addToBlocklightQueue(int x, int y, int z, int level) {
+        lightingEngine.addBlocklight(x, y, z, level);
     }
 
     @Override
-    public void processLightQueue() {
-        boolean noLightUpdatesQueued = sunlightQueue.isEmpty() && sunlightRemovalQueue.isEmpty();
-
-        for(IChunk c : chunkMap.values()) {
-            // If the chunk is not lighted and it is in range, setup lighting then set as lighted
-            if(c == null)
-                continue;
-            
-            if(!c.hasInitialSun()
-                    && RadixClient.getInstance().getPlayer().getPosition().planeDistance(
-                        c.getStartPosition().x, c.getStartPosition().z)
-                        <= RadixClient.getInstance().getSettingsManager().getVisualSettings().getViewDistance() * CHUNK_SIZE) {
-                setupLighting(c);
-                c.finishAddingSun();
-            }
-
-            if(noLightUpdatesQueued && c.waitingOnLightFinish()) {
-                c.finishChangingSunlight();
-            }
-        }
-
-        processLightRemovalQueue();
+    public void addToSunlightRemovalQueue(int x, int y, int z) {
+        lightingEngine.removeSunlight(x, y, z);
     }
 
-    private void processLightRemovalQueue() {
-        if (!sunlightRemovalQueue.isEmpty()) {
-            Side[] sides = Side.values();
-
-            List<IChunk> changedChunks = new ArrayList<>();
-            int[] pos;
-            while ((pos = sunlightRemovalQueue.poll()) != null) {
-                int x = pos[0];
-                int cx = x & (CHUNK_SIZE-1);
-                int y = pos[1];
-                int z = pos[2];
-                int cz = z & (CHUNK_SIZE-1);
-                IChunk posChunk = getChunk(x, z);
-                if (posChunk == null) {
-                    continue;
-                }
-                int ll;
-                try {
-                    ll = posChunk.getSunlight(x & (CHUNK_SIZE-1), y, z & (CHUNK_SIZE-1));
-
-                    // Spread off to each side
-                    for(Side s : sides) {
-                        int sx = x; // Side x coord
-                        int sy = y; // Side y coord
-                        int sz = z; // Side z coord
-                        int scx = cx; // Chunk-relative side x coord
-                        int scz = cz; // Chunk-relative side z coord
-                        IChunk sChunk = posChunk;
-
-                        // Offset values based on side
-                        switch (s) {
-                            case TOP:
-                                sy += 1;
-                                break;
-                            case BOTTOM:
-                                sy -= 1;
-                                break;
-                            case WEST:
-                                sx -= 1;
-                                scx -= 1;
-                                break;
-                            case EAST:
-                                sx += 1;
-                                scx += 1;
-                                break;
-                            case NORTH:
-                                sz += 1;
-                                scz += 1;
-                                break;
-                            case SOUTH:
-                                sz -= 1;
-                                scz -= 1;
-                                break;
-                        }
-                        if (sy < 0)
-                            continue;
-                        if (sy > WORLD_HEIGHT - 1)
-                            continue;
-
-                        // Select the correct chunk
-                        if(scz < 0) {
-                            scz += CHUNK_SIZE;
-                            sChunk = getChunk(sx, sz);
-                        } else if(scz > CHUNK_SIZE-1) {
-                            scz -= CHUNK_SIZE;
-                            sChunk = getChunk(sx, sz);
-                        }
-                        if(scx < 0) {
-                            scx += CHUNK_SIZE;
-                            sChunk = getChunk(sx, sz);
-                        } else if(scx > CHUNK_SIZE-1) {
-                            scx -= CHUNK_SIZE;
-                            sChunk = getChunk(sx, sz);
-                        }
-
-                        if(sChunk == null)
-                            continue;
-
-                        Block sBlock = sChunk.getBlock(scx, sy, scz);
-                        int sSunlight = sChunk.getSunlight(scx, sy, scz);
-                        if (sBlock == null || sBlock.doesLightPassThrough() || !sBlock.decreasesLight()) {
-                            if ((sSunlight < ll || s == Side.BOTTOM) && sSunlight != 0) { // Reset lighting for blocks affected by this block
-                                addToSunlightRemovalQueue(sx, sy, sz);
-                            } else if (sSunlight >= ll && s != Side.BOTTOM) { // Add surrounding blocks to queue to restore lighting of the reset blocks
-                                addToSunlightQueue(sx, sy, sz);
-                            }
-                        }
-                    }
+    @Override
+    public void addToBlocklightRemovalQueue(int x, int y, int z) {
+        lightingEngine.removeBlocklight(x, y, z);
+    }
 
-                    // Reset lighting for the block
-                    posChunk.setSunlight(cx, y, cz, 0);
-                    changedChunks.add(posChunk);
-                } catch (CoordinatesOutOfBoundsException e) {
-                    e.printStackTrace();
-                }
-            }
-            changedChunks.forEach(IChunk::finishChangingSunlight);
+    @Override
+    public void processLightQueue() {
+        // Lighting itself happens on the lighting workers, all that's left here is letting chunks know it's done
+        IChunk changed;
+        while ((changed = lightingEngine.pollChangedChunk()) != null) {
+            changed.finishChangingSunlight();
         }
     }
 
     @Override
     public void cleanup() {
+        lightingEngine.shutdown();
+        meshScheduler.shutdown();
         chunkMap.values().forEach(IChunk::dispose);
         modelBatch.dispose();
         modelBatch = null;
+        chunkRenderer.dispose();
+        chunkRenderer = null;
+        occlusionCuller.dispose();
         skyboxTexture.dispose();
         skyboxTexture = null;
         skyboxModel.dispose();
@@ -515,11 +495,8 @@ public class World implements IWorld {
     }
 
     @Override
-    public void addToMeshQueue(Runnable updateFaces) {
-        chunkMeshQueue.add(updateFaces);
-        synchronized (chunkMeshQueue) {
-            chunkMeshQueue.notify();
-        }
+    public void addToMeshQueue(IChunk chunk, Runnable updateFaces) {
+        meshScheduler.submit(chunk, updateFaces);
     }
 
     @Override
@@ -527,6 +504,11 @@ public class World implements IWorld {
         chunkUploadQueue.add(upload);
     }
 
+    @Override
+    public ChunkRenderer getChunkRenderer() {
+        return chunkRenderer;
+    }
+
     private ModelInstance createSkybox() {
         if(skyboxModel != null) {
             skyboxModel.dispose();
@@ -591,46 +573,24 @@ public class World implements IWorld {
         return new ModelInstance(skyboxModel = modelBuilder.end());
     }
 
-    private void setupLighting(IChunk c) {
-        try {
-            int y = WORLD_HEIGHT - 1;
-            for (int z = 0; z < CHUNK_SIZE; z++) {
-                for (int x = 0; x < CHUNK_SIZE; x++) {
-                    if (c.getBlockId(x, y, z) > 0) {
-                        break;
-                    }
-                    sunlightQueue.add(new int[]{c.getStartPosition().x + x, y, c.getStartPosition().z + z});
-                    c.setSunlight(x, y, z, c.getMaxLightLevel());
-
-                    for (int cy = 0; cy < getHeight(); cy++) {
-                        int id = c.getBlockId(x, cy, z);
-                        if (id > 0) {
-                            Block blk = RadixAPI.instance.getBlock(id);
-                            if (blk.getLightValue() > 0) {
-                                c.setBlocklight(x, cy, z, blk.getLightValue());
-                                addToBlocklightQueue(c.getStartPosition().x + x, c.getStartPosition().y + cy, c.getStartPosition().z + z);
-                            }
-                        }
-                    }
-                }
-            }
-            synchronized (sunlightQueue) {
-                sunlightQueue.notifyAll();
-            }
-            synchronized (blocklightQueue) {
-                blocklightQueue.notifyAll();
+    private void processChunkUploadQueue() {
+        VisualSettings settings = RadixClient.getInstance().getSettingsManager().getVisualSettings();
+        if(!settings.getSmoothChunkLoad().getValue()) {
+            while(!chunkUploadQueue.isEmpty()) {
+                chunkUploadQueue.poll().run();
             }
-        } catch (CoordinatesOutOfBoundsException ex) {
-            ex.printStackTrace();
+            return;
         }
-    }
 
-    private void processChunkUploadQueue() {
-        while(!chunkUploadQueue.isEmpty()) {
-            chunkUploadQueue.poll().run();
-            if(RadixClient.getInstance().getSettingsManager().getVisualSettings().getSmoothChunkLoad().getValue())
-                break; // distribute chunk uploads across frames (one chunkload per frame)
-        }
+        // Distribute chunk uploads across frames by time rather than count, so small uploads don't hold loading back
+        // Always does at least one, so loading can't stall on uploads that take longer than the budget
+        long deadline = System.nanoTime() + settings.getChunkUploadBudget() * 1000000L;
+        do {
+            Runnable upload = chunkUploadQueue.poll();
+            if(upload == null)
+                break;
+            upload.run();
+        } while(System.nanoTime() < deadline);
     }
 
 }
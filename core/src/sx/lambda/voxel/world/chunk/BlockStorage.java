@@ -18,6 +18,36 @@ public interface BlockStorage {
     void setBlocklight(int x, int y, int z, int blocklight) throws CoordinatesOutOfBoundsException;
     byte getBlocklight(int x, int y, int z) throws CoordinatesOutOfBoundsException;
 
+    /*
+     * Unchecked access by index, for callers that have already made sure they're in range.
+     * Index is x + z*width + y*width*depth.
+     */
+
+    /**
+     * @return Block state at the index. Last nibble is metadata, everything up to that is block id.
+     */
+    int getStateUnchecked(int index);
+    int getSunlightUnchecked(int index);
+    int getBlocklightUnchecked(int index);
+
+    /**
+     * Copy block states for a run of indices into an array
+     * @param fromIndex First index to copy, inclusive
+     * @param toIndex Last index to copy, exclusive
+     * @param dest Array to copy into
+     * @param destOffset Position in dest to put the state for fromIndex
+     */
+    void copyStates(int fromIndex, int toIndex, short[] dest, int destOffset);
+
+    /**
+     * Copy light for a run of indices into an array. Each byte is sunlight in the upper nibble and blocklight in the lower nibble.
+     * @param fromIndex First index to copy, inclusive
+     * @param toIndex Last index to copy, exclusive
+     * @param dest Array to copy into
+     * @param destOffset Position in dest to put the light for fromIndex
+     */
+    void copyLight(int fromIndex, int toIndex, byte[] dest, int destOffset);
+
     int getWidth();
     int getHeight();
     int getDepth();
@@ -1,33 +1,33 @@
 package sx.lambda.voxel.world.chunk;
 
-import com.badlogic.gdx.graphics.GL20;
-import com.badlogic.gdx.graphics.Mesh;
-import com.badlogic.gdx.graphics.g3d.*;
-import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
-import com.badlogic.gdx.graphics.g3d.attributes.FloatAttribute;
-import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
-import com.badlogic.gdx.graphics.g3d.model.Node;
-import com.badlogic.gdx.graphics.g3d.model.NodePart;
-import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
-import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
 import com.badlogic.gdx.math.MathUtils;
 import sx.lambda.voxel.RadixClient;
 import sx.lambda.voxel.api.RadixAPI;
 import sx.lambda.voxel.api.events.render.EventChunkRender;
 import sx.lambda.voxel.block.Block;
-import sx.lambda.voxel.block.NormalBlockRenderer;
+import sx.lambda.voxel.block.RenderLayer;
 import sx.lambda.voxel.block.Side;
+import sx.lambda.voxel.client.render.ChunkRenderer;
+import sx.lambda.voxel.client.render.RegionBuffer;
+import sx.lambda.voxel.client.render.meshing.ChunkSnapshot;
 import sx.lambda.voxel.client.render.meshing.GreedyMesher;
+import sx.lambda.voxel.client.render.meshing.SectionConnectivity;
+import sx.lambda.voxel.client.render.meshing.VertexWriter;
 import sx.lambda.voxel.util.Vec3i;
 import sx.lambda.voxel.world.IWorld;
 import sx.lambda.voxel.world.biome.Biome;
 import sx.lambda.voxel.world.chunk.BlockStorage.CoordinatesOutOfBoundsException;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class Chunk implements IChunk {
 
     private static final int MAX_LIGHT_LEVEL = 15;
+    private static final int ALL_SECTIONS = -1;
+    private static final RenderLayer[] RENDER_LAYERS = RenderLayer.values();
 
     private final transient GreedyMesher mesher;
     private final int size;
@@ -37,28 +37,65 @@ public class Chunk implements IChunk {
      *
      * Done this way so that piece full of air don't take up more memory than they have to
      */
-    private final FlatBlockStorage[] blockStorage;
+    private final PalettedBlockStorage[] blockStorage;
     /**
      * Map of light levels (ints 0-15) to brightness multipliers
      */
     private final float[] lightLevelMap = new float[MAX_LIGHT_LEVEL+1];
     private final transient IWorld parentWorld;
     private final Biome biome;
-    private transient MeshBuilder meshBuilder;
-    private transient ModelBuilder modelBuilder;
-    private transient Model opaqueModel, translucentModel;
-    private transient ModelInstance opaqueModelInstance, translucentModelInstance;
+    /**
+     * Where each render layer's geometry is in its region's buffers, indexed by RenderLayer ordinal. Null for layers without any geometry.
+     * Only touched on the GL thread.
+     */
+    private final transient RegionBuffer.Slice[] slices = new RegionBuffer.Slice[RENDER_LAYERS.length];
     private final Vec3i startPosition;
     private int highestPoint;
+    /**
+     * Y value of the highest non-air block in each column, indexed x + z*size. -1 for empty columns.
+     */
+    private final short[] highestBlocks;
+    /**
+     * Y value of the highest block that sunlight can't pass through in each column, indexed x + z*size. -1 if there isn't one.
+     */
+    private final short[] highestOpaqueBlocks;
     private transient boolean sunlightChanging;
     private transient boolean sunlightChanged;
-    private boolean setup;
     private boolean cleanedUp;
     private boolean lighted;
 
-    private List<GreedyMesher.Face> translucentFaces;
-    private List<GreedyMesher.Face> opaqueFaces;
-    private boolean meshing, meshed, meshWhenDone;
+    /**
+     * Mesh waiting to be uploaded, null once taken for upload
+     */
+    private final transient AtomicReference<PendingMesh> pendingMesh = new AtomicReference<>();
+    /**
+     * Which faces of each section can see each other through it, see {@link SectionConnectivity}. Indexed by section.
+     * Replaced as a whole by the mesh worker, so the render thread never sees a half written one.
+     */
+    private transient volatile long[] sectionConnections;
+    /**
+     * Layers of each section that are opaque all the way across, indexed by section. Replaced as a whole by the mesh worker, same as the connections.
+     */
+    private transient volatile int[] sectionOpaqueLayers;
+    /**
+     * Box around the blocks in each section, indexed by section. Replaced as a whole by the mesh worker, same as the connections.
+     */
+    private transient volatile int[] sectionBounds;
+    /**
+     * Vertices from the last mesh of each section, indexed by section, so that sections that haven't changed don't need to be meshed again.
+     * Each entry holds the section's vertices for every render layer. Only touched by the worker meshing the chunk, and a chunk is only meshed by one worker at a time.
+     */
+    private final transient VertexWriter[][] sectionVertices;
+    /**
+     * Bit mask of sections that have changed since they were last meshed. Bit n is the section from y=n*16 to y=n*16+15.
+     */
+    private final transient AtomicInteger dirtySections = new AtomicInteger(ALL_SECTIONS);
+    // Set by mesh workers, read on the render thread
+    private volatile boolean meshing, meshed, meshWhenDone;
+    /**
+     * Links to the loaded chunks around this one, indexed (dx + 1) + (dz + 1) * 3. The middle entry is this chunk.
+     */
+    private final transient AtomicReferenceArray<IChunk> neighbors = new AtomicReferenceArray<>(9);
 
     public Chunk(IWorld world, Vec3i startPosition, Biome biome, boolean local) {
         this.parentWorld = world;
@@ -67,7 +104,18 @@ public class Chunk implements IChunk {
         this.size = world.getChunkSize();
         this.height = world.getHeight();
 
-        this.blockStorage = new FlatBlockStorage[MathUtils.ceilPositive((float)this.height/16)];
+        this.blockStorage = new PalettedBlockStorage[MathUtils.ceilPositive((float)this.height/16)];
+        this.neighbors.set(4, this);
+        this.highestBlocks = new short[size*size];
+        this.highestOpaqueBlocks = new short[size*size];
+        Arrays.fill(highestBlocks, (short)-1);
+        Arrays.fill(highestOpaqueBlocks, (short)-1);
+        this.sectionVertices = new VertexWriter[blockStorage.length][];
+        this.sectionConnections = new long[blockStorage.length];
+        Arrays.fill(sectionConnections, SectionConnectivity.ALL); // Until it's meshed, don't hide anything behind it
+        this.sectionOpaqueLayers = new int[blockStorage.length];
+        this.sectionBounds = new int[blockStorage.length];
+        Arrays.fill(sectionBounds, SectionConnectivity.FULL_BOUNDS);
 
         for (int i = 0; i <= MAX_LIGHT_LEVEL; i++) {
             int reduction = MAX_LIGHT_LEVEL - i;
@@ -80,8 +128,11 @@ public class Chunk implements IChunk {
             mesher = null;
         }
 
-        if(local)
-            highestPoint = world.getChunkGen().generate(startPosition, this);
+        if(local) {
+            world.getChunkGen().generate(startPosition, this);
+            recalculateHeightmap();
+            compact();
+        }
     }
 
     @Override
@@ -90,40 +141,34 @@ public class Chunk implements IChunk {
             return;
 
         boolean neighborSunlightChanging = false;
-        for(int x = startPosition.x - 16; x <= startPosition.x + 16; x += 16) {
-            for(int z = startPosition.z - 16; z <= startPosition.z + 16; z += 16) {
-                IChunk c = getWorld().getChunk(x, z);
-                if(c != null && c.waitingOnLightFinish()) {
-                    neighborSunlightChanging = true;
-                }
+        for(int i = 0; i < 9; i++) {
+            IChunk c = neighbors.get(i);
+            if(c != null && c.waitingOnLightFinish()) {
+                neighborSunlightChanging = true;
             }
         }
         if(neighborSunlightChanging)
             return;
 
-        if (!setup) {
-            meshBuilder = new MeshBuilder();
-            modelBuilder = new ModelBuilder();
-
-            setup = true;
-        }
-
         sunlightChanged = false;
 
+        if(dirtySections.get() == 0)
+            return;
+
         if(meshing) {
             meshWhenDone = true;
         } else {
             meshing = true;
-            parentWorld.addToMeshQueue(this::updateFaces);
+            parentWorld.addToMeshQueue(this, this::updateFaces);
         }
     }
 
     @Override
-    public void render(ModelBatch batch) {
+    public void prepareRender() {
         if (cleanedUp) return;
 
         if(!meshing && meshed) {
-            getWorld().addToChunkUploadQueue(this::updateModelInstances);
+            getWorld().addToChunkUploadQueue(this::uploadMeshes);
             meshed = false;
         }
 
@@ -131,16 +176,13 @@ public class Chunk implements IChunk {
             meshWhenDone = false;
             rerender();
         }
-
-        if(opaqueModelInstance != null) {
-            batch.render(opaqueModelInstance);
-        }
     }
 
     @Override
-    public void renderTranslucent(ModelBatch batch) {
-        if(translucentModelInstance != null) {
-            batch.render(translucentModelInstance);
+    public void render(ChunkRenderer renderer, RenderLayer layer, int sections) {
+        RegionBuffer.Slice slice = slices[layer.ordinal()];
+        if(slice != null && !cleanedUp) {
+            renderer.render(slice, sections);
         }
     }
 
@@ -209,19 +251,10 @@ public class Chunk implements IChunk {
                 continue;
 
             // Select the correct chunk
-            if(scz < 0) {
-                scz += size;
-                sChunk = parentWorld.getChunk(sx, sz);
-            } else if(scz > size-1) {
-                scz -= size;
-                sChunk = parentWorld.getChunk(sx, sz);
-            }
-            if(scx < 0) {
-                scx += size;
-                sChunk = parentWorld.getChunk(sx, sz);
-            } else if(scx > size-1) {
-                scx -= size;
-                sChunk = parentWorld.getChunk(sx, sz);
+            if(scx < 0 || scx > size-1 || scz < 0 || scz > size-1) {
+                sChunk = getChunkContaining(scx, scz);
+                scx &= size-1;
+                scz &= size-1;
             }
 
             if(sChunk == null)
@@ -259,22 +292,25 @@ public class Chunk implements IChunk {
         storage.setBlock(x, sy, z, null);
         storage.setId(x, sy, z, 0);
         storage.setMeta(x, sy, z, 0);
-        storage.setSunlight(x, sy, z, 0);
-        storage.setBlocklight(x, sy, z, 0);
-        // TODO XXX LIGHTING add to block light removal queue
+        // Clear out the old light, including any the block was giving off. Only the lighting workers write light,
+        // and the neighbors queued below spread back in once the removal is done.
+        parentWorld.addToSunlightRemovalQueue(startPosition.x + x, startPosition.y + y, startPosition.z + z);
+        parentWorld.addToBlocklightRemovalQueue(startPosition.x + x, startPosition.y + y, startPosition.z + z);
+        updateHeightmap(x, y, z, null);
 
+        int sections = getSectionsAround(y);
         if(x == size - 1) {
-            getWorld().rerenderChunk(getWorld().getChunk(getStartPosition().x + size, getStartPosition().z));
+            getWorld().rerenderChunk(getNeighbor(1, 0), sections);
         } else if(x == 0) {
-            getWorld().rerenderChunk(getWorld().getChunk(getStartPosition().x - size, getStartPosition().z));
+            getWorld().rerenderChunk(getNeighbor(-1, 0), sections);
         }
         if(z == size - 1) {
-            getWorld().rerenderChunk(getWorld().getChunk(getStartPosition().x, getStartPosition().z + size));
+            getWorld().rerenderChunk(getNeighbor(0, 1), sections);
         } else if(z == 0) {
-            getWorld().rerenderChunk(getWorld().getChunk(getStartPosition().x, getStartPosition().z - size));
+            getWorld().rerenderChunk(getNeighbor(0, -1), sections);
         }
 
-        getWorld().rerenderChunk(this);
+        getWorld().rerenderChunk(this, sections);
 
         this.addNeighborsToLightQueues(x, y, z);
     }
@@ -298,29 +334,28 @@ public class Chunk implements IChunk {
         int sy = y & 0xF;
         BlockStorage storage = blockStorage[storageIndex];
         if(storage == null)
-            storage = blockStorage[storageIndex] = new FlatBlockStorage(size, 16, size);
+            storage = createStorage(storageIndex);
 
-        int oldBlock = storage.getId(x, sy, z);
         Block blk = RadixAPI.instance.getBlock(block);
+        Block oldBlk = storage.getBlock(x, sy, z);
+        int oldEmittedVal = oldBlk == null ? 0 : oldBlk.getLightValue();
+        int oldBlocklightVal = storage.getBlocklight(x, sy, z);
         int newBlocklightVal = blk.getLightValue();
-        storage.setBlocklight(x, sy, z, newBlocklightVal);
-        if(oldBlock > 0) {
-            Block oldBlk = RadixAPI.instance.getBlock(oldBlock);
-            int oldBlocklightVal = oldBlk.getLightValue();
-            if(newBlocklightVal > oldBlocklightVal) {
-                parentWorld.addToBlocklightQueue(startPosition.x + x, startPosition.y + y, startPosition.z + z);
-            } else if(oldBlocklightVal > newBlocklightVal) {
-                // TODO XXX LIGTHTING add to blocklight removal queue
-            }
-        } else {
-            if(newBlocklightVal > 0) {
-                parentWorld.addToBlocklightQueue(startPosition.x + x, startPosition.y + y, startPosition.z + z);
-            }
-        }
+        boolean lightPasses = blk.doesLightPassThrough() || !blk.decreasesLight();
 
+        // Block goes in before any light updates are queued, so the lighting workers see the new block
         storage.setId(x, sy, z, block);
         storage.setBlock(x, sy, z, blk);
-        highestPoint = Math.max(highestPoint, y);
+        updateHeightmap(x, y, z, blk);
+        markBlockChanged(x, y, z);
+
+        if(newBlocklightVal > oldBlocklightVal) {
+            parentWorld.addToBlocklightQueue(startPosition.x + x, startPosition.y + y, startPosition.z + z, newBlocklightVal);
+        } else if(oldBlocklightVal > newBlocklightVal && (oldEmittedVal > newBlocklightVal || !lightPasses)) {
+            // Either a brighter light source was replaced, or light that used to pass through here is now blocked.
+            // Clear it out along with everything it lit. The new block gets its own light back as part of the removal.
+            parentWorld.addToBlocklightRemovalQueue(startPosition.x + x, startPosition.y + y, startPosition.z + z);
+        }
 
         if(updateSunlight)
             getWorld().addToSunlightRemovalQueue(x + startPosition.x, y + startPosition.y, z + startPosition.z);
@@ -335,9 +370,10 @@ public class Chunk implements IChunk {
         int sy = y & 0xF;
         BlockStorage storage = blockStorage[storageIndex];
         if(storage == null)
-            storage = blockStorage[storageIndex] = new FlatBlockStorage(size, 16, size);
+            storage = createStorage(storageIndex);
 
         storage.setMeta(x, sy, z, meta);
+        markBlockChanged(x, y, z);
     }
 
     @Override
@@ -345,13 +381,7 @@ public class Chunk implements IChunk {
         if(x < 0 || x >= size || z < 0 || z >= size || y < 0 || y >= height)
             throw new CoordinatesOutOfBoundsException();
 
-        int storageIndex = y / 16;
-        int sy = y & 0xF;
-        BlockStorage storage = blockStorage[storageIndex];
-        if(storage == null)
-            return 0;
-
-        return storage.getMeta(x, sy, z);
+        return getMetaUnchecked(x, y, z);
     }
 
     @Override
@@ -359,15 +389,7 @@ public class Chunk implements IChunk {
         if(x < 0 || x >= size || z < 0 || z >= size || y < 0 || y >= height)
             throw new CoordinatesOutOfBoundsException();
 
-        int storageIndex = y / 16;
-        int sy = y & 0xF;
-        BlockStorage storage = blockStorage[storageIndex];
-        if(storage == null)
-            return 0;
-
-        int sunlight = storage.getSunlight(x, sy, z);
-        int blocklight = storage.getBlocklight(x, sy, z);
-        return lightLevelMap[MathUtils.clamp(sunlight+blocklight, 0, MAX_LIGHT_LEVEL)];
+        return getLightLevelUnchecked(x, y, z);
     }
 
     @Override
@@ -380,78 +402,184 @@ public class Chunk implements IChunk {
         return highestPoint;
     }
 
-    private void updateModelInstances() {
-        if(opaqueFaces != null) {
-            if(opaqueModel != null)
-                opaqueModel.dispose();
-
-            Mesh opaqueMesh = mesher.meshFaces(opaqueFaces, meshBuilder);
-            modelBuilder.begin();
-            modelBuilder.part(String.format("c-%d,%d", startPosition.x, startPosition.z), opaqueMesh, GL20.GL_TRIANGLES,
-                    new Material(TextureAttribute.createDiffuse(NormalBlockRenderer.getBlockMap())));
-            opaqueModel = modelBuilder.end();
-
-            opaqueModelInstance = new ModelInstance(opaqueModel) {
-                @Override
-                public Renderable getRenderable(final Renderable out, final Node node,
-                                                final NodePart nodePart) {
-                    super.getRenderable(out, node, nodePart);
-                    if(RadixClient.getInstance().isWireframe()) {
-                        out.primitiveType = GL20.GL_LINES;
-                    } else {
-                        out.primitiveType = GL20.GL_TRIANGLES;
-                    }
-                    return out;
-                }
-            };
-
-            opaqueFaces = null;
-        }
-
-        if(translucentFaces != null) {
-            if(translucentModel != null)
-                translucentModel.dispose();
-
-            Mesh translucentMesh = mesher.meshFaces(translucentFaces, meshBuilder);
-            modelBuilder.begin();
-            modelBuilder.part(String.format("c-%d,%d-t", startPosition.x, startPosition.z), translucentMesh, GL20.GL_TRIANGLES,
-                    new Material(TextureAttribute.createDiffuse(NormalBlockRenderer.getBlockMap()),
-                            new BlendingAttribute(),
-                            FloatAttribute.createAlphaTest(0.25f)));
-            translucentModel = modelBuilder.end();
-
-            translucentModelInstance = new ModelInstance(translucentModel) {
-                @Override
-                public Renderable getRenderable(final Renderable out, final Node node,
-                                                final NodePart nodePart) {
-                    super.getRenderable(out, node, nodePart);
-                    if(RadixClient.getInstance().isWireframe()) {
-                        out.primitiveType = GL20.GL_LINES;
-                    } else {
-                        out.primitiveType = GL20.GL_TRIANGLES;
-                    }
-                    return out;
-                }
-            };
+    @Override
+    public long getSectionConnections(int section) {
+        return sectionConnections[section];
+    }
+
+    @Override
+    public int getOpaqueLayers(int section) {
+        return sectionOpaqueLayers[section];
+    }
+
+    @Override
+    public int getSectionBounds(int section) {
+        return sectionBounds[section];
+    }
+
+    private void uploadMeshes() {
+        PendingMesh pending = pendingMesh.getAndSet(null);
+        if(pending == null || cleanedUp) {
+            release(pending);
+            return;
+        }
 
-            translucentFaces = null;
+        ChunkRenderer renderer = getWorld().getChunkRenderer();
+        for(RenderLayer layer : RENDER_LAYERS) {
+            int i = layer.ordinal();
+            // Vertices were already written on the mesh thread, this is just the upload, into the space already taken in the region if it fits
+            slices[i] = renderer.upload(startPosition, size, layer, slices[i], pending.vertices[i], pending.sectionStarts[i]);
+            pending.vertices[i].release();
         }
     }
 
     private void updateFaces() {
-        opaqueFaces = mesher.getFaces(block -> !block.isTranslucent());
-        translucentFaces = mesher.getFaces(Block::isTranslucent);
+        int dirty = dirtySections.getAndSet(0) & (1 << blockStorage.length) - 1;
+        if(dirty != 0) {
+            // Light has settled by the time we're meshing, good time to collapse changed sections that ended up uniform
+            compact(dirty);
+            // Copy everything the dirty sections need up front, meshing never touches live chunk data
+            int lowest = Integer.numberOfTrailingZeros(dirty);
+            int highest = 31 - Integer.numberOfLeadingZeros(dirty);
+            ChunkSnapshot snapshot = ChunkSnapshot.capture(this, lowest*16, (highest + 1)*16);
+            long[] connections = sectionConnections.clone();
+            int[] opaqueLayers = sectionOpaqueLayers.clone();
+            int[] bounds = sectionBounds.clone();
+            for(int section = lowest; section <= highest; section++) {
+                if((dirty & 1 << section) == 0)
+                    continue;
+                int minY = section*16;
+                // Every layer comes out of one sweep over the section
+                releaseAll(sectionVertices[section]);
+                sectionVertices[section] = mesher.meshLayers(snapshot, minY, minY + 16);
+                SectionConnectivity connectivity = SectionConnectivity.compute(snapshot, minY);
+                connections[section] = connectivity.getConnections();
+                opaqueLayers[section] = connectivity.getOpaqueLayers();
+                bounds[section] = connectivity.getBounds();
+            }
+            sectionConnections = connections;
+            sectionOpaqueLayers = opaqueLayers;
+            sectionBounds = bounds;
+        }
+        PendingMesh joined = new PendingMesh();
+        for(RenderLayer layer : RENDER_LAYERS) {
+            int i = layer.ordinal();
+            joined.vertices[i] = joinSectionVertices(sectionVertices, layer);
+            joined.sectionStarts[i] = getSectionStarts(sectionVertices, layer);
+        }
+        release(pendingMesh.getAndSet(joined)); // Remeshed again before the last mesh got uploaded
         meshing = false;
         meshed = true;
         RadixAPI.instance.getEventManager().push(new EventChunkRender(Chunk.this));
     }
 
+    private static VertexWriter joinSectionVertices(VertexWriter[][] sectionVertices, RenderLayer layer) {
+        VertexWriter joined = new VertexWriter();
+        for(VertexWriter[] vertices : sectionVertices) {
+            if(vertices != null)
+                joined.append(vertices[layer.ordinal()]);
+        }
+        return joined;
+    }
+
+    private static int[] getSectionStarts(VertexWriter[][] sectionVertices, RenderLayer layer) {
+        int[] starts = new int[sectionVertices.length + 1];
+        for(int section = 0; section < sectionVertices.length; section++) {
+            VertexWriter[] vertices = sectionVertices[section];
+            starts[section + 1] = starts[section] + (vertices == null ? 0 : vertices[layer.ordinal()].getQuadCount());
+        }
+        return starts;
+    }
+
+    private static void release(PendingMesh pending) {
+        if(pending != null)
+            releaseAll(pending.vertices);
+    }
+
+    private static void releaseAll(VertexWriter[] writers) {
+        if(writers == null)
+            return;
+        for(VertexWriter writer : writers) {
+            writer.release();
+        }
+    }
+
+    @Override
+    public void markSectionsDirty(int sectionMask) {
+        int current;
+        do {
+            current = dirtySections.get();
+            if((current & sectionMask) == sectionMask)
+                return; // Already dirty, skip the write since this gets hit for every light update
+        } while(!dirtySections.compareAndSet(current, current | sectionMask));
+    }
+
+    /**
+     * Mark the sections that a block change at the position affects, including the sections of neighboring chunks when on an edge
+     */
+    private void markBlockChanged(int x, int y, int z) {
+        int sections = getSectionsAround(y);
+        markSectionsDirty(sections);
+        if(x == size - 1) {
+            markNeighborDirty(1, 0, sections);
+        } else if(x == 0) {
+            markNeighborDirty(-1, 0, sections);
+        }
+        if(z == size - 1) {
+            markNeighborDirty(0, 1, sections);
+        } else if(z == 0) {
+            markNeighborDirty(0, -1, sections);
+        }
+    }
+
+    private void markNeighborDirty(int dx, int dz, int sections) {
+        IChunk neighbor = getNeighbor(dx, dz);
+        if(neighbor != null)
+            neighbor.markSectionsDirty(sections);
+    }
+
+    @Override
+    public IChunk getNeighbor(int dx, int dz) {
+        return neighbors.get((dx + 1) + (dz + 1) * 3);
+    }
+
+    @Override
+    public void setNeighbor(int dx, int dz, IChunk neighbor) {
+        if(dx == 0 && dz == 0)
+            throw new IllegalArgumentException("A chunk can't be its own neighbor");
+        neighbors.set((dx + 1) + (dz + 1) * 3, neighbor);
+    }
+
+    @Override
+    public IChunk getChunkContaining(int x, int z) {
+        int dx = x < 0 ? -1 : (x >= size ? 1 : 0);
+        int dz = z < 0 ? -1 : (z >= size ? 1 : 0);
+        return neighbors.get((dx + 1) + (dz + 1) * 3);
+    }
+
+    /**
+     * Get the sections whose meshes can be affected by a change at the specified height.
+     * That's the section the height is in, plus the section next to it if the height is on the section's top or bottom layer.
+     */
+    private int getSectionsAround(int y) {
+        int section = y / 16;
+        int sections = 1 << section;
+        if((y & 0xF) == 0 && section > 0)
+            sections |= 1 << (section - 1);
+        if((y & 0xF) == 15 && section < blockStorage.length - 1)
+            sections |= 1 << (section + 1);
+        return sections;
+    }
+
     @Override
     public void dispose() {
-        if(opaqueModel != null)
-            opaqueModel.dispose();
-        if(translucentModel != null)
-            translucentModel.dispose();
+        for(int i = 0; i < slices.length; i++) {
+            if(slices[i] != null) {
+                getWorld().getChunkRenderer().free(slices[i]);
+                slices[i] = null;
+            }
+        }
+        release(pendingMesh.getAndSet(null));
         cleanedUp = true;
     }
 
@@ -469,13 +597,14 @@ public class Chunk implements IChunk {
         BlockStorage storage = blockStorage[storageIndex];
         if(storage == null) {
             if(level < MAX_LIGHT_LEVEL) {
-                storage = blockStorage[storageIndex] = new FlatBlockStorage(size, 16, size);
+                storage = createStorage(storageIndex);
             } else {
                 return;
             }
         }
 
         storage.setSunlight(x, sy, z, level);
+        markSectionsDirty(getSectionsAround(y));
 
         sunlightChanging = true;
         sunlightChanged = true;
@@ -486,13 +615,7 @@ public class Chunk implements IChunk {
         if(x < 0 || x >= size || z < 0 || z >= size || y < 0 || y >= height)
             throw new CoordinatesOutOfBoundsException();
 
-        int storageIndex = y / 16;
-        int sy = y & 0xF;
-        BlockStorage storage = blockStorage[storageIndex];
-        if(storage == null)
-            return MAX_LIGHT_LEVEL;
-
-        return storage.getSunlight(x, sy, z);
+        return getSunlightUnchecked(x, y, z);
     }
 
     @Override
@@ -505,14 +628,15 @@ public class Chunk implements IChunk {
         int sy = y & 0xF;
         BlockStorage storage = blockStorage[storageIndex];
         if(storage == null) {
-            if(level < MAX_LIGHT_LEVEL) {
-                storage = blockStorage[storageIndex] = new FlatBlockStorage(size, 16, size);
+            if(level > 0) {
+                storage = createStorage(storageIndex);
             } else {
                 return;
             }
         }
 
         storage.setBlocklight(x, sy, z, level);
+        markSectionsDirty(getSectionsAround(y));
     }
 
     @Override
@@ -520,13 +644,7 @@ public class Chunk implements IChunk {
         if(x < 0 || x >= size || z < 0 || z >= size || y < 0 || y >= height)
             throw new CoordinatesOutOfBoundsException();
 
-        int storageIndex = y / 16;
-        int sy = y & 0xF;
-        BlockStorage storage = blockStorage[storageIndex];
-        if(storage == null)
-            return MAX_LIGHT_LEVEL;
-
-        return storage.getBlocklight(x, sy, z);
+        return getBlocklightUnchecked(x, y, z);
     }
 
     @Override
@@ -534,13 +652,7 @@ public class Chunk implements IChunk {
         if(x < 0 || x >= size || z < 0 || z >= size || y < 0 || y >= height)
             throw new CoordinatesOutOfBoundsException();
 
-        int storageIndex = y / 16;
-        int sy = y & 0xF;
-        BlockStorage storage = blockStorage[storageIndex];
-        if(storage == null)
-            return 0;
-
-        return storage.getId(x, sy, z);
+        return getBlockIdUnchecked(x, y, z);
     }
 
     @Override
@@ -548,13 +660,135 @@ public class Chunk implements IChunk {
         if(x < 0 || x >= size || z < 0 || z >= size || y < 0 || y >= height)
             throw new CoordinatesOutOfBoundsException();
 
-        int storageIndex = y / 16;
-        int sy = y & 0xF;
-        BlockStorage storage = blockStorage[storageIndex];
+        return getBlockUnchecked(x, y, z);
+    }
+
+    @Override
+    public int getBlockIdUnchecked(int x, int y, int z) {
+        BlockStorage storage = blockStorage[y / 16];
         if(storage == null)
-            return null;
+            return 0;
+
+        return storage.getStateUnchecked(getStorageIndex(x, y, z)) >> 4;
+    }
+
+    @Override
+    public short getMetaUnchecked(int x, int y, int z) {
+        BlockStorage storage = blockStorage[y / 16];
+        if(storage == null)
+            return 0;
 
-        return storage.getBlock(x, sy, z);
+        return (short)(storage.getStateUnchecked(getStorageIndex(x, y, z)) & 0xF);
+    }
+
+    @Override
+    public Block getBlockUnchecked(int x, int y, int z) {
+        return RadixAPI.instance.getBlock(getBlockIdUnchecked(x, y, z));
+    }
+
+    @Override
+    public int getSunlightUnchecked(int x, int y, int z) {
+        BlockStorage storage = blockStorage[y / 16];
+        if(storage == null)
+            return MAX_LIGHT_LEVEL;
+
+        return storage.getSunlightUnchecked(getStorageIndex(x, y, z));
+    }
+
+    @Override
+    public int getBlocklightUnchecked(int x, int y, int z) {
+        BlockStorage storage = blockStorage[y / 16];
+        if(storage == null)
+            return 0;
+
+        return storage.getBlocklightUnchecked(getStorageIndex(x, y, z));
+    }
+
+    @Override
+    public float getLightLevelUnchecked(int x, int y, int z) {
+        BlockStorage storage = blockStorage[y / 16];
+        if(storage == null)
+            return 0;
+
+        int index = getStorageIndex(x, y, z);
+        int sunlight = storage.getSunlightUnchecked(index);
+        int blocklight = storage.getBlocklightUnchecked(index);
+        return lightLevelMap[MathUtils.clamp(sunlight+blocklight, 0, MAX_LIGHT_LEVEL)];
+    }
+
+    @Override
+    public void copyBlockStates(int x1, int y1, int z1, int x2, int y2, int z2, short[] dest) throws CoordinatesOutOfBoundsException {
+        checkBox(x1, y1, z1, x2, y2, z2);
+
+        int rowLength = x2 - x1;
+        int destIndex = 0;
+        for(int y = y1; y < y2; y++) {
+            BlockStorage storage = blockStorage[y / 16];
+            if(storage == null) {
+                int layerLength = rowLength*(z2 - z1);
+                Arrays.fill(dest, destIndex, destIndex + layerLength, (short)0);
+                destIndex += layerLength;
+                continue;
+            }
+            if(rowLength == size && z1 == 0 && z2 == size) { // Whole layer is one contiguous run
+                int start = getStorageIndex(0, y, 0);
+                storage.copyStates(start, start + size*size, dest, destIndex);
+                destIndex += size*size;
+                continue;
+            }
+            for(int z = z1; z < z2; z++) {
+                int start = getStorageIndex(x1, y, z);
+                storage.copyStates(start, start + rowLength, dest, destIndex);
+                destIndex += rowLength;
+            }
+        }
+    }
+
+    @Override
+    public void copyLight(int x1, int y1, int z1, int x2, int y2, int z2, byte[] dest) throws CoordinatesOutOfBoundsException {
+        checkBox(x1, y1, z1, x2, y2, z2);
+
+        int rowLength = x2 - x1;
+        int destIndex = 0;
+        for(int y = y1; y < y2; y++) {
+            BlockStorage storage = blockStorage[y / 16];
+            if(storage == null) {
+                int layerLength = rowLength*(z2 - z1);
+                Arrays.fill(dest, destIndex, destIndex + layerLength, (byte)(MAX_LIGHT_LEVEL << 4));
+                destIndex += layerLength;
+                continue;
+            }
+            if(rowLength == size && z1 == 0 && z2 == size) { // Whole layer is one contiguous run
+                int start = getStorageIndex(0, y, 0);
+                storage.copyLight(start, start + size*size, dest, destIndex);
+                destIndex += size*size;
+                continue;
+            }
+            for(int z = z1; z < z2; z++) {
+                int start = getStorageIndex(x1, y, z);
+                storage.copyLight(start, start + rowLength, dest, destIndex);
+                destIndex += rowLength;
+            }
+        }
+    }
+
+    private void checkBox(int x1, int y1, int z1, int x2, int y2, int z2) throws CoordinatesOutOfBoundsException {
+        if(x1 < 0 || z1 < 0 || y1 < 0 || x2 > size || z2 > size || y2 > height || x1 > x2 || y1 > y2 || z1 > z2)
+            throw new CoordinatesOutOfBoundsException();
+    }
+
+    /**
+     * @return Index of the position inside of the storage for its section
+     */
+    private int getStorageIndex(int x, int y, int z) {
+        return x + z*size + (y & 0xF)*size*size;
+    }
+
+    /**
+     * Give a section without storage its own. It starts out the way the empty section read: air, full sunlight and no blocklight.
+     */
+    private BlockStorage createStorage(int storageIndex) {
+        return blockStorage[storageIndex] = new PalettedBlockStorage(size, 16, size, MAX_LIGHT_LEVEL);
     }
 
     @Override
@@ -601,6 +835,27 @@ public class Chunk implements IChunk {
         return lightLevelMap[lightLevel];
     }
 
+    @Override
+    public int getUniformBlockState(int section) {
+        PalettedBlockStorage storage = blockStorage[section];
+        if(storage == null)
+            return 0;
+        return storage.getUniformState();
+    }
+
+    @Override
+    public void compact() {
+        compact(ALL_SECTIONS);
+    }
+
+    private void compact(int sectionMask) {
+        for(int section = 0; section < blockStorage.length; section++) {
+            PalettedBlockStorage storage = blockStorage[section];
+            if(storage != null && (sectionMask & 1 << section) != 0)
+                storage.compact();
+        }
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
@@ -609,8 +864,101 @@ public class Chunk implements IChunk {
         return hash;
     }
 
-    public void setHighestPoint(int y) {
-        this.highestPoint = y;
+    @Override
+    public int getHighestBlock(int x, int z) {
+        return highestBlocks[x + z*size];
+    }
+
+    @Override
+    public int getHighestOpaqueBlock(int x, int z) {
+        return highestOpaqueBlocks[x + z*size];
+    }
+
+    /**
+     * Rebuild the heightmaps from scratch. Call this after filling in block storage directly.
+     */
+    public void recalculateHeightmap() {
+        Arrays.fill(highestBlocks, (short)-1);
+        Arrays.fill(highestOpaqueBlocks, (short)-1);
+
+        int columns = size*size;
+        int remaining = columns; // Columns that haven't found their highest opaque block yet
+        for(int section = blockStorage.length - 1; section >= 0 && remaining > 0; section--) {
+            PalettedBlockStorage storage = blockStorage[section];
+            if(storage == null || storage.getUniformState() == 0)
+                continue; // All air
+            int top = Math.min(height - 1, section*16 + 15);
+            for(int i = 0; i < columns; i++) {
+                if(highestOpaqueBlocks[i] >= 0)
+                    continue;
+                int x = i % size;
+                int z = i / size;
+                for(int y = top; y >= section*16; y--) {
+                    Block blk = getBlockUnchecked(x, y, z);
+                    if(blk == null)
+                        continue;
+                    if(highestBlocks[i] < 0)
+                        highestBlocks[i] = (short)y;
+                    if(blocksSunlight(blk)) {
+                        highestOpaqueBlocks[i] = (short)y;
+                        remaining--;
+                        break;
+                    }
+                }
+            }
+        }
+
+        recalculateHighestPoint();
+    }
+
+    /**
+     * Keep the heightmaps up to date after the block at the position changed
+     * @param blk New block at the position, or null if it was removed
+     */
+    private void updateHeightmap(int x, int y, int z, Block blk) {
+        int column = x + z*size;
+        if(blk != null) {
+            if(y > highestBlocks[column])
+                highestBlocks[column] = (short)y;
+            if(y > highestOpaqueBlocks[column] && blocksSunlight(blk))
+                highestOpaqueBlocks[column] = (short)y;
+            else if(y == highestOpaqueBlocks[column] && !blocksSunlight(blk))
+                highestOpaqueBlocks[column] = (short)findHighestOpaqueBelow(x, y, z);
+            if(y > highestPoint)
+                highestPoint = y;
+        } else {
+            if(y == highestOpaqueBlocks[column])
+                highestOpaqueBlocks[column] = (short)findHighestOpaqueBelow(x, y, z);
+            if(y == highestBlocks[column]) {
+                int newHighest = y - 1;
+                while(newHighest >= 0 && getBlockIdUnchecked(x, newHighest, z) == 0) {
+                    newHighest--;
+                }
+                highestBlocks[column] = (short)newHighest;
+                if(y == highestPoint)
+                    recalculateHighestPoint();
+            }
+        }
+    }
+
+    private int findHighestOpaqueBelow(int x, int y, int z) {
+        int newHighest = y - 1;
+        while(newHighest >= 0 && !blocksSunlight(getBlockUnchecked(x, newHighest, z))) {
+            newHighest--;
+        }
+        return newHighest;
+    }
+
+    private void recalculateHighestPoint() {
+        int highest = 0;
+        for(short columnHeight : highestBlocks) {
+            highest = Math.max(highest, columnHeight);
+        }
+        highestPoint = highest;
+    }
+
+    private static boolean blocksSunlight(Block blk) {
+        return blk != null && !blk.doesLightPassThrough() && blk.decreasesLight();
     }
 
     /**
@@ -618,8 +966,16 @@ public class Chunk implements IChunk {
      *
      * Don't use this to set data unless you know what you're doing (ex. loading a chunk initially)
      */
-    public FlatBlockStorage[] getBlockStorage() {
+    public PalettedBlockStorage[] getBlockStorage() {
         return blockStorage;
     }
 
+    /**
+     * Vertices for each render layer, indexed by RenderLayer ordinal, along with where each section starts in them
+     */
+    private static class PendingMesh {
+        private final VertexWriter[] vertices = new VertexWriter[RENDER_LAYERS.length];
+        private final int[][] sectionStarts = new int[RENDER_LAYERS.length][];
+    }
+
 }
@@ -117,6 +117,35 @@ public class FlatBlockStorage implements BlockStorage {
         return (byte)this.blocklight.get(x, y, z);
     }
 
+    @Override
+    public int getStateUnchecked(int index) {
+        return blocks[index] & 0xFFFF;
+    }
+
+    @Override
+    public int getSunlightUnchecked(int index) {
+        return getNibble(sunlight.getData(), index);
+    }
+
+    @Override
+    public int getBlocklightUnchecked(int index) {
+        return getNibble(blocklight.getData(), index);
+    }
+
+    @Override
+    public void copyStates(int fromIndex, int toIndex, short[] dest, int destOffset) {
+        System.arraycopy(blocks, fromIndex, dest, destOffset, toIndex - fromIndex);
+    }
+
+    @Override
+    public void copyLight(int fromIndex, int toIndex, byte[] dest, int destOffset) {
+        byte[] sunlight = this.sunlight.getData();
+        byte[] blocklight = this.blocklight.getData();
+        for(int i = fromIndex; i < toIndex; i++) {
+            dest[destOffset++] = (byte)(getNibble(sunlight, i) << 4 | getNibble(blocklight, i));
+        }
+    }
+
     @Override
     public int getWidth() {
         return width;
@@ -155,6 +184,10 @@ public class FlatBlockStorage implements BlockStorage {
         this.blocks = blocks;
     }
 
+    private static int getNibble(byte[] nibbles, int index) {
+        return nibbles[index >> 1] >> ((index & 1) << 2) & 0xF;
+    }
+
     private int getIndex(int x, int y, int z) throws CoordinatesOutOfBoundsException {
         if(x < 0 || x > width || y < 0 || y > height || z < 0 || z > depth)
             throw new CoordinatesOutOfBoundsException();
@@ -1,8 +1,9 @@
 package sx.lambda.voxel.world.chunk;
 
-import com.badlogic.gdx.graphics.g3d.ModelBatch;
 import com.badlogic.gdx.utils.Disposable;
 import sx.lambda.voxel.block.Block;
+import sx.lambda.voxel.block.RenderLayer;
+import sx.lambda.voxel.client.render.ChunkRenderer;
 import sx.lambda.voxel.util.Vec3i;
 import sx.lambda.voxel.world.IWorld;
 import sx.lambda.voxel.world.biome.Biome;
@@ -16,16 +17,52 @@ import java.io.Serializable;
 public interface IChunk extends Serializable, Disposable {
 
     /**
-     * Redraws all of the blocks in the chunk
+     * Redraws the blocks in the sections of the chunk that have been marked dirty
      */
     void rerender();
 
     /**
-     * Renders the chunk
+     * Get one of the chunks next to this one
+     * @param dx Chunk offset on the X axis, -1 to 1
+     * @param dz Chunk offset on the Z axis, -1 to 1
+     * @return The neighbor, this chunk if both offsets are 0, or null if the neighbor isn't loaded
      */
-    void render(ModelBatch batch);
+    IChunk getNeighbor(int dx, int dz);
 
-    void renderTranslucent(ModelBatch modelBatch);
+    /**
+     * Set the link to one of the chunks next to this one. Called by the world when chunks are added and removed.
+     * @param dx Chunk offset on the X axis, -1 to 1
+     * @param dz Chunk offset on the Z axis, -1 to 1
+     * @param neighbor Neighboring chunk, or null if it was unloaded
+     */
+    void setNeighbor(int dx, int dz, IChunk neighbor);
+
+    /**
+     * Get the chunk that contains a position given relative to this chunk.
+     * The position can be up to one chunk outside of this one on each axis.
+     * @param x X value, relative to this chunk. -(chunk size)->(chunk size * 2 - 1)
+     * @param z Z value, relative to this chunk. -(chunk size)->(chunk size * 2 - 1)
+     * @return This chunk, one of its neighbors, or null if the neighbor isn't loaded
+     */
+    IChunk getChunkContaining(int x, int z);
+
+    /**
+     * Mark sections as needing to be meshed again the next time the chunk rerenders
+     * @param sectionMask Bit mask of the 16-high sections, bit n covering y from n*16 to n*16+15
+     */
+    void markSectionsDirty(int sectionMask);
+
+    /**
+     * Get the chunk ready to be drawn. Called once each frame the chunk is visible, before any of its layers are rendered.
+     * Finished meshes are queued for upload here, and the chunk is remeshed if its light changed.
+     */
+    void prepareRender();
+
+    /**
+     * Renders one layer of the chunk. Layers that don't need sorting are batched with the rest of the chunk's region, see {@link ChunkRenderer#flush()}.
+     * @param sections Bit mask of the 16-high sections to draw, bit n covering y from n*16 to n*16+15
+     */
+    void render(ChunkRenderer renderer, RenderLayer layer, int sections);
 
     /**
      * Gets the starting position of the chunk
@@ -37,6 +74,38 @@ public interface IChunk extends Serializable, Disposable {
      */
     int getHighestPoint();
 
+    /**
+     * Get which faces of a 16-high section can see each other through it, worked out when the section is meshed
+     * @return Connections as packed by {@link sx.lambda.voxel.client.render.meshing.SectionConnectivity}
+     */
+    long getSectionConnections(int section);
+
+    /**
+     * Get the layers of a 16-high section that are opaque all the way across the chunk, worked out when the section is meshed
+     * @return Bit mask, bit n being the layer n blocks above the bottom of the section
+     */
+    int getOpaqueLayers(int section);
+
+    /**
+     * Get a box around the blocks in a 16-high section, worked out when the section is meshed
+     * @return Bounds as packed by {@link sx.lambda.voxel.client.render.meshing.SectionConnectivity#packBounds(int, int, int, int, int, int)}
+     */
+    int getSectionBounds(int section);
+
+    /**
+     * @param x X value, relative to the chunk. 0->(chunk size - 1)
+     * @param z Z value, relative to the chunk. 0->(chunk size - 1)
+     * @return The y-value of the highest non-air block in the column, or -1 if the column is empty
+     */
+    int getHighestBlock(int x, int z);
+
+    /**
+     * @param x X value, relative to the chunk. 0->(chunk size - 1)
+     * @param z Z value, relative to the chunk. 0->(chunk size - 1)
+     * @return The y-value of the highest block in the column that sunlight can't pass through, or -1 if there isn't one
+     */
+    int getHighestOpaqueBlock(int x, int z);
+
     int getBlockId(int x, int y, int z) throws CoordinatesOutOfBoundsException;
 
     /**
@@ -135,6 +204,42 @@ public interface IChunk extends Serializable, Disposable {
      */
     void setBlocklight(int x, int y, int z, int level) throws CoordinatesOutOfBoundsException;
 
+    /*
+     * Unchecked versions of the getters above, for callers that have already made sure the coordinates are in range.
+     * Results for coordinates outside of the chunk are undefined.
+     */
+
+    int getBlockIdUnchecked(int x, int y, int z);
+
+    short getMetaUnchecked(int x, int y, int z);
+
+    Block getBlockUnchecked(int x, int y, int z);
+
+    int getSunlightUnchecked(int x, int y, int z);
+
+    int getBlocklightUnchecked(int x, int y, int z);
+
+    float getLightLevelUnchecked(int x, int y, int z);
+
+    /**
+     * Copy the block states in a box into an array
+     * @param x1 Start X, inclusive, relative to the chunk
+     * @param y1 Start Y, inclusive
+     * @param z1 Start Z, inclusive, relative to the chunk
+     * @param x2 End X, exclusive, relative to the chunk
+     * @param y2 End Y, exclusive
+     * @param z2 End Z, exclusive, relative to the chunk
+     * @param dest Array to copy into, indexed (x-x1) + (z-z1)*(x2-x1) + (y-y1)*(x2-x1)*(z2-z1).
+     *             Each state has the metadata in the last nibble and the block id in everything before it.
+     */
+    void copyBlockStates(int x1, int y1, int z1, int x2, int y2, int z2, short[] dest) throws CoordinatesOutOfBoundsException;
+
+    /**
+     * Copy the light values in a box into an array.
+     * Same box and indexing as copyBlockStates, each byte is sunlight in the upper nibble and blocklight in the lower nibble.
+     */
+    void copyLight(int x1, int y1, int z1, int x2, int y2, int z2, byte[] dest) throws CoordinatesOutOfBoundsException;
+
     void eachBlock(EachBlockCallee action);
 
     /**
@@ -169,6 +274,18 @@ public interface IChunk extends Serializable, Disposable {
 
     int getMaxLightLevel();
 
+    /**
+     * Get the block state shared by every block in a 16-high section of the chunk
+     * @param section Index of the section, y/16
+     * @return Block state (id << 4 | meta), or -1 if the section contains more than one block state
+     */
+    int getUniformBlockState(int section);
+
+    /**
+     * Collapse block and light data that holds the same value everywhere in a section down to a single value
+     */
+    void compact();
+
     float getBrightness(int lightLevel);
 
     interface EachBlockCallee {
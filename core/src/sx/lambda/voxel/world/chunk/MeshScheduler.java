@@ -0,0 +1,284 @@
+package sx.lambda.voxel.world.chunk;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.math.Vector3;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Meshes chunks off of the main thread, on a pool of worker threads.
+ *
+ * Jobs are taken closest first, measured from the camera. Chunks outside of the view frustum count as farther away than they are,
+ * so what's on screen fills in before what's behind the player.
+ * Priorities are worked out on the render thread when a job is queued, and again for everything waiting whenever the camera moves or turns far enough.
+ *
+ * There is at most one waiting job per chunk. Queueing a chunk that's already waiting replaces its job and keeps its place,
+ * and since meshing reads the chunk when the job runs rather than when it's queued, the mesh always comes out of the latest data.
+ *
+ * A chunk's mesh depends on the eight chunks around it, so chunks missing any of those are parked instead of queued.
+ * They're queued once the last neighbor shows up, which keeps a chunk from being meshed over and over while the world loads in around it.
+ * Chunks on the edge of the loaded area never get all their neighbors, they're queued anyway after {@link #NEIGHBOR_TIMEOUT} ms.
+ */
+public class MeshScheduler {
+
+    /**
+     * How far the camera can move, in blocks, before waiting jobs get their priorities recalculated
+     */
+    private static final float REFOCUS_DISTANCE = 8;
+    /**
+     * How far the camera can turn before waiting jobs get their priorities recalculated, as the cosine of the angle
+     */
+    private static final float REFOCUS_ANGLE_COS = 0.9f;
+    /**
+     * Distance multiplier for chunks outside of the view frustum
+     */
+    private static final float HIDDEN_PENALTY = 2;
+    /**
+     * How long a chunk waits for its neighbors to load before it's meshed without them, in milliseconds
+     */
+    private static final long NEIGHBOR_TIMEOUT = 1000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition jobAvailable = lock.newCondition();
+    private final PriorityQueue<Job> queue = new PriorityQueue<>();
+    private final Map<IChunk, Job> waiting = new HashMap<>();
+    /**
+     * Jobs for chunks that are waiting on neighbors. Only used on the render thread.
+     */
+    private final Map<IChunk, Job> parked = new HashMap<>();
+    /**
+     * Jobs being run right now, to know when the queue has drained
+     */
+    private int running;
+    private boolean shutdown;
+
+    /**
+     * Camera that priorities were last calculated from. Null until the first call to {@link #update(Camera)}.
+     * Only used on the render thread.
+     */
+    private Camera camera;
+    private final Vector3 focusPosition = new Vector3();
+    private final Vector3 focusDirection = new Vector3();
+
+    /**
+     * @param threads Number of worker threads, 0 or less to use one per core, leaving one for the render thread
+     */
+    public MeshScheduler(int threads) {
+        if (threads <= 0) {
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        }
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, "Mesh Worker " + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queue a chunk to be meshed, or update the job of a chunk that's already waiting. Must be called on the render thread.
+     * If any of the chunk's neighbors aren't loaded yet, the job is parked until they are.
+     *
+     * @param chunk Chunk the job meshes, used to dedupe and prioritize
+     * @param job Method that generates the mesh
+     */
+    public void submit(IChunk chunk, Runnable job) {
+        Job parkedJob = parked.get(chunk);
+        if (!hasAllNeighbors(chunk)) {
+            if (parkedJob != null) {
+                parkedJob.task = job;
+            } else {
+                parked.put(chunk, new Job(chunk, job, System.currentTimeMillis()));
+            }
+            return;
+        }
+        if (parkedJob != null) {
+            parked.remove(chunk);
+        }
+        enqueue(chunk, job);
+    }
+
+    private void enqueue(IChunk chunk, Runnable job) {
+        float priority = priorityOf(chunk);
+        lock.lock();
+        try {
+            if (shutdown)
+                return;
+            Job existing = waiting.get(chunk);
+            if (existing != null) {
+                existing.task = job;
+                if (existing.priority != priority) {
+                    queue.remove(existing);
+                    existing.priority = priority;
+                    queue.add(existing);
+                }
+                return;
+            }
+            Job created = new Job(chunk, job, 0);
+            created.priority = priority;
+            waiting.put(chunk, created);
+            queue.add(created);
+            jobAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue parked chunks that are ready and update priorities. Must be called on the render thread, once a frame.
+     *
+     * @param camera Camera that jobs are prioritized by.
+     *               Waiting jobs are only reprioritized when it has moved or turned enough to matter.
+     */
+    public void update(Camera camera) {
+        setFocus(camera);
+
+        if (parked.isEmpty())
+            return;
+        long now = System.currentTimeMillis();
+        for (Iterator<Job> it = parked.values().iterator(); it.hasNext(); ) {
+            Job job = it.next();
+            if (now - job.parkedAt >= NEIGHBOR_TIMEOUT || hasAllNeighbors(job.chunk)) {
+                it.remove();
+                enqueue(job.chunk, job.task);
+            }
+        }
+    }
+
+    private void setFocus(Camera camera) {
+        boolean moved = this.camera != camera
+                || focusPosition.dst2(camera.position) > REFOCUS_DISTANCE * REFOCUS_DISTANCE
+                || focusDirection.dot(camera.direction) < REFOCUS_ANGLE_COS;
+        if (!moved)
+            return;
+        this.camera = camera;
+        focusPosition.set(camera.position);
+        focusDirection.set(camera.direction);
+
+        lock.lock();
+        try {
+            if (queue.isEmpty())
+                return;
+            for (Job job : waiting.values()) {
+                job.priority = priorityOf(job.chunk);
+            }
+            queue.clear();
+            queue.addAll(waiting.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean hasAllNeighbors(IChunk chunk) {
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if ((dx != 0 || dz != 0) && chunk.getNeighbor(dx, dz) == null)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Lower is sooner
+     */
+    private float priorityOf(IChunk chunk) {
+        if (camera == null)
+            return 0;
+        int halfWidth = chunk.getWorld().getChunkSize() / 2;
+        float midX = chunk.getStartPosition().x + halfWidth;
+        float midZ = chunk.getStartPosition().z + halfWidth;
+        float halfHeight = (chunk.getHighestPoint() + 1) / 2f;
+        float dx = midX - focusPosition.x;
+        float dz = midZ - focusPosition.z;
+        float distance = dx * dx + dz * dz;
+        if (!camera.frustum.boundsInFrustum(midX, halfHeight, midZ, halfWidth, halfHeight, halfWidth)) {
+            distance *= HIDDEN_PENALTY * HIDDEN_PENALTY;
+        }
+        return distance;
+    }
+
+    /**
+     * Stop the workers. Jobs that haven't started are dropped.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            parked.clear();
+            queue.clear();
+            waiting.clear();
+            jobAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Job job;
+            boolean drained;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !shutdown) {
+                    jobAvailable.await();
+                }
+                if (shutdown)
+                    return;
+                job = queue.poll();
+                waiting.remove(job.chunk);
+                running++;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                job.task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                lock.lock();
+                try {
+                    running--;
+                    drained = queue.isEmpty() && running == 0;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            // Frame reuse only draws when asked, make sure the new meshes get picked up
+            if (drained) {
+                Gdx.graphics.requestRendering();
+            }
+        }
+    }
+
+    private static class Job implements Comparable<Job> {
+        private final IChunk chunk;
+        private Runnable task;
+        private float priority;
+        /**
+         * When the job was parked to wait on neighbors
+         */
+        private final long parkedAt;
+
+        Job(IChunk chunk, Runnable task, long parkedAt) {
+            this.chunk = chunk;
+            this.task = task;
+            this.parkedAt = parkedAt;
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            return Float.compare(priority, other.priority);
+        }
+    }
+
+}
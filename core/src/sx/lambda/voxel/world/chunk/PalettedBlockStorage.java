@@ -0,0 +1,501 @@
+package sx.lambda.voxel.world.chunk;
+
+import org.spacehq.mc.protocol.data.game.chunk.NibbleArray3d;
+import sx.lambda.voxel.api.RadixAPI;
+import sx.lambda.voxel.block.Block;
+
+import java.util.Arrays;
+
+/**
+ * Block storage that keeps a palette of the block states in use and stores bit-packed indices into it.
+ *
+ * Most sections only contain a handful of different blocks, so a few bits per block are enough instead of a full short.
+ * The index width starts at 1 bit and doubles whenever the palette outgrows it.
+ *
+ * Sections made of a single block state (all air, all stone, all water...) don't store any indices at all,
+ * and light arrays that hold the same value everywhere are replaced by that value.
+ * The first write that breaks the uniformity allocates the real arrays, and {@link #compact()} collapses them back.
+ *
+ * Writes, light included, are synchronized, reads are not.
+ * The palette, indices and light arrays are published together as one {@link State}, and any write that replaces one of them
+ * publishes a new state instead of changing the old one. Readers take the state once, so they never mix arrays from two states.
+ * Writes that keep the layout go straight into the current arrays.
+ */
+public class PalettedBlockStorage implements BlockStorage {
+
+    private static final int MAX_BITS_PER_ENTRY = 16;
+
+    private final int width, depth, height, size;
+    private volatile State state;
+
+    public PalettedBlockStorage(int width, int height, int depth) {
+        this(width, height, depth, 0);
+    }
+
+    /**
+     * @param sunlight Sunlight level every block starts out with
+     */
+    public PalettedBlockStorage(int width, int height, int depth, int sunlight) {
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.size = width*height*depth;
+        if(size % 64 != 0)
+            throw new IllegalArgumentException("Storage size must be a multiple of 64");
+
+        state = new State(new short[2], 1, null, null, null, sunlight, 0); // Air
+    }
+
+    @Override
+    public void setId(int x, int y, int z, int id) throws CoordinatesOutOfBoundsException {
+        if(x < 0 || x >= width || z <  0 || z >= depth || y < 0 || y >= height)
+            throw new CoordinatesOutOfBoundsException();
+
+        synchronized(this) {
+            int index = getIndex(x, y, z);
+            int state = getState(index);
+            setState(index, id << 4 | (state & 0xF));
+        }
+    }
+
+    @Override
+    public short getId(int x, int y, int z) throws CoordinatesOutOfBoundsException {
+        if(x < 0 || x >= width || z <  0 || z >= depth || y < 0 || y >= height)
+            throw new CoordinatesOutOfBoundsException();
+
+        return (short)(getState(getIndex(x, y, z)) >> 4);
+    }
+
+    @Override
+    public void setMeta(int x, int y, int z, int meta) throws CoordinatesOutOfBoundsException {
+        if(x < 0 || x >= width || z <  0 || z >= depth || y < 0 || y >= height)
+            throw new CoordinatesOutOfBoundsException();
+
+        synchronized(this) {
+            int index = getIndex(x, y, z);
+            int state = getState(index);
+            setState(index, (state >> 4 << 4) | (meta & 0xF));
+        }
+    }
+
+    @Override
+    public short getMeta(int x, int y, int z) throws CoordinatesOutOfBoundsException {
+        if(x < 0 || x >= width || z <  0 || z >= depth || y < 0 || y >= height)
+            throw new CoordinatesOutOfBoundsException();
+
+        return (short)(getState(getIndex(x, y, z)) & 0xF);
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, Block block) throws CoordinatesOutOfBoundsException {
+    }
+
+    @Override
+    public Block getBlock(int x, int y, int z) throws CoordinatesOutOfBoundsException {
+        return RadixAPI.instance.getBlock(getId(x, y, z));
+    }
+
+    @Override
+    public void setSunlight(int x, int y, int z, int sunlight) throws CoordinatesOutOfBoundsException {
+        if(x < 0 || x >= width || z <  0 || z >= depth || y < 0 || y >= height)
+            throw new CoordinatesOutOfBoundsException();
+
+        synchronized(this) {
+            State state = this.state;
+            if(state.sunlight != null) {
+                state.sunlight.set(x, y, z, sunlight);
+            } else if(sunlight != state.uniformSunlight) {
+                NibbleArray3d array = filledNibbleArray(state.uniformSunlight);
+                array.set(x, y, z, sunlight);
+                this.state = state.withLight(array, state.uniformSunlight, state.blocklight, state.uniformBlocklight);
+            }
+        }
+    }
+
+    @Override
+    public byte getSunlight(int x, int y, int z) throws CoordinatesOutOfBoundsException {
+        if(x < 0 || x >= width || z <  0 || z >= depth || y < 0 || y >= height)
+            throw new CoordinatesOutOfBoundsException();
+
+        State state = this.state;
+        if(state.sunlight == null)
+            return (byte)state.uniformSunlight;
+        return (byte)state.sunlight.get(x, y, z);
+    }
+
+    @Override
+    public void setBlocklight(int x, int y, int z, int blocklight) throws CoordinatesOutOfBoundsException {
+        if(x < 0 || x >= width || z <  0 || z >= depth || y < 0 || y >= height)
+            throw new CoordinatesOutOfBoundsException();
+
+        synchronized(this) {
+            State state = this.state;
+            if(state.blocklight != null) {
+                state.blocklight.set(x, y, z, blocklight);
+            } else if(blocklight != state.uniformBlocklight) {
+                NibbleArray3d array = filledNibbleArray(state.uniformBlocklight);
+                array.set(x, y, z, blocklight);
+                this.state = state.withLight(state.sunlight, state.uniformSunlight, array, state.uniformBlocklight);
+            }
+        }
+    }
+
+    @Override
+    public byte getBlocklight(int x, int y, int z) throws CoordinatesOutOfBoundsException {
+        if(x < 0 || x >= width || z <  0 || z >= depth || y < 0 || y >= height)
+            throw new CoordinatesOutOfBoundsException();
+
+        State state = this.state;
+        if(state.blocklight == null)
+            return (byte)state.uniformBlocklight;
+        return (byte)state.blocklight.get(x, y, z);
+    }
+
+    @Override
+    public int getStateUnchecked(int index) {
+        return getState(index);
+    }
+
+    @Override
+    public int getSunlightUnchecked(int index) {
+        State state = this.state;
+        if(state.sunlight == null)
+            return state.uniformSunlight;
+        return getNibble(state.sunlight.getData(), index);
+    }
+
+    @Override
+    public int getBlocklightUnchecked(int index) {
+        State state = this.state;
+        if(state.blocklight == null)
+            return state.uniformBlocklight;
+        return getNibble(state.blocklight.getData(), index);
+    }
+
+    @Override
+    public void copyStates(int fromIndex, int toIndex, short[] dest, int destOffset) {
+        State state = this.state;
+        short[] palette = state.palette;
+        long[] data = state.data;
+        if(data == null) {
+            Arrays.fill(dest, destOffset, destOffset + toIndex - fromIndex, palette[0]);
+            return;
+        }
+        for(int i = fromIndex; i < toIndex; i++) {
+            dest[destOffset++] = palette[read(data, i)];
+        }
+    }
+
+    @Override
+    public void copyLight(int fromIndex, int toIndex, byte[] dest, int destOffset) {
+        State state = this.state;
+        if(state.sunlight == null && state.blocklight == null) {
+            Arrays.fill(dest, destOffset, destOffset + toIndex - fromIndex, (byte)(state.uniformSunlight << 4 | state.uniformBlocklight));
+            return;
+        }
+        byte[] sunlight = state.sunlight == null ? null : state.sunlight.getData();
+        byte[] blocklight = state.blocklight == null ? null : state.blocklight.getData();
+        for(int i = fromIndex; i < toIndex; i++) {
+            int sun = sunlight == null ? state.uniformSunlight : getNibble(sunlight, i);
+            int block = blocklight == null ? state.uniformBlocklight : getNibble(blocklight, i);
+            dest[destOffset++] = (byte)(sun << 4 | block);
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Set underlying sunlight array
+     */
+    public synchronized void setSunlight(NibbleArray3d nibbleArray) {
+        State state = this.state;
+        this.state = state.withLight(nibbleArray, state.uniformSunlight, state.blocklight, state.uniformBlocklight);
+    }
+
+    /**
+     * Set underlying blocklight array
+     */
+    public synchronized void setBlocklight(NibbleArray3d nibbleArray) {
+        State state = this.state;
+        this.state = state.withLight(state.sunlight, state.uniformSunlight, nibbleArray, state.uniformBlocklight);
+    }
+
+    /**
+     * Collapse block and light data that ends up holding the same value everywhere back into single values,
+     * and drop palette entries that are no longer used by any block.
+     *
+     * Goes over every block, so only call it on storages that were just loaded or have changed.
+     */
+    public synchronized void compact() {
+        State state = this.state;
+        if(state.data != null) {
+            int[] uses = new int[state.paletteSize];
+            for(int i = 0; i < size; i++) {
+                uses[read(state.data, i)]++;
+            }
+            int used = 0;
+            int lastUsed = 0;
+            for(int i = 0; i < state.paletteSize; i++) {
+                if(uses[i] > 0) {
+                    used++;
+                    lastUsed = i;
+                }
+            }
+
+            if(used == 1) {
+                short[] palette = new short[2];
+                palette[0] = state.palette[lastUsed];
+                state = new State(palette, 1, null, state.sunlight, state.blocklight, state.uniformSunlight, state.uniformBlocklight);
+            } else if(used < state.paletteSize) {
+                short[] states = new short[size];
+                copyStates(state, states);
+                state = pack(states, state);
+            }
+        }
+
+        NibbleArray3d sunlight = state.sunlight, blocklight = state.blocklight;
+        int uniformSunlight = state.uniformSunlight, uniformBlocklight = state.uniformBlocklight;
+        if(sunlight != null && isUniform(sunlight)) {
+            uniformSunlight = sunlight.get(0, 0, 0);
+            sunlight = null;
+        }
+        if(blocklight != null && isUniform(blocklight)) {
+            uniformBlocklight = blocklight.get(0, 0, 0);
+            blocklight = null;
+        }
+        this.state = state.withLight(sunlight, uniformSunlight, blocklight, uniformBlocklight);
+    }
+
+    /**
+     * @return True if every block in the storage has the same block state
+     */
+    public boolean isUniform() {
+        return state.data == null;
+    }
+
+    /**
+     * @return The block state shared by every block in the storage, or -1 if there's more than one.
+     *         Same format as FlatBlockStorage: last nibble is metadata, everything up to that is block id.
+     */
+    public int getUniformState() {
+        State state = this.state;
+        if(state.data != null)
+            return -1;
+        return state.palette[0] & 0xFFFF;
+    }
+
+    /**
+     * Replace every block in the storage at once, building the palette in a single pass.
+     * @param blocks Array of shorts with the last nibble as the metadata and everything before it as the block id,
+     *               indexed the same way as FlatBlockStorage
+     */
+    public synchronized void setBlocks(short[] blocks) {
+        if(blocks.length != size)
+            throw new IllegalArgumentException("Expected " + size + " blocks, got " + blocks.length);
+
+        this.state = pack(blocks, state);
+    }
+
+    /**
+     * @return Amount of distinct block states that have been stored
+     */
+    public int getPaletteSize() {
+        return state.paletteSize;
+    }
+
+    /**
+     * @return Amount of bits used per block for palette indices
+     */
+    public int getBitsPerEntry() {
+        long[] data = state.data;
+        if(data == null)
+            return 0;
+        return data.length*64/size;
+    }
+
+    private int getState(int index) {
+        State state = this.state;
+        if(state.data == null)
+            return state.palette[0] & 0xFFFF;
+        return state.palette[read(state.data, index)] & 0xFFFF;
+    }
+
+    // Callers must hold the lock
+    private void setState(int index, int blockState) {
+        State state = this.state;
+        int paletteIndex = indexOf(state.palette, state.paletteSize, blockState);
+        if(state.data != null && paletteIndex >= 0) {
+            write(state.data, index, paletteIndex);
+            return;
+        }
+        if(paletteIndex == 0)
+            return; // Uniform, and already this state
+
+        // New palette entry or first block that differs from the rest, both get copied so the published state never changes shape
+        short[] palette = state.palette;
+        int paletteSize = state.paletteSize;
+        if(paletteIndex < 0) {
+            palette = Arrays.copyOf(palette, paletteSize == palette.length ? palette.length*2 : palette.length);
+            palette[paletteSize] = (short)blockState;
+            paletteIndex = paletteSize++;
+        }
+        long[] data = new long[size*bitsFor(paletteSize)/64];
+        if(state.data != null) {
+            for(int i = 0; i < size; i++) {
+                write(data, i, read(state.data, i));
+            }
+        }
+        write(data, index, paletteIndex);
+        this.state = new State(palette, paletteSize, data, state.sunlight, state.blocklight, state.uniformSunlight, state.uniformBlocklight);
+    }
+
+    /**
+     * Build a state holding the blocks, with the light of another state
+     */
+    private State pack(short[] blocks, State light) {
+        short[] palette = new short[2];
+        palette[0] = blocks[0];
+        int paletteSize = 1;
+        int[] indices = new int[size];
+        int lastState = blocks[0] & 0xFFFF, lastIndex = 0;
+        for(int i = 0; i < size; i++) {
+            int state = blocks[i] & 0xFFFF;
+            if(state != lastState) {
+                lastIndex = indexOf(palette, paletteSize, state);
+                if(lastIndex < 0) {
+                    if(paletteSize == palette.length) {
+                        palette = Arrays.copyOf(palette, palette.length*2);
+                    }
+                    palette[paletteSize] = (short)state;
+                    lastIndex = paletteSize++;
+                }
+                lastState = state;
+            }
+            indices[i] = lastIndex;
+        }
+
+        long[] data = null;
+        if(paletteSize > 1) {
+            data = new long[size*bitsFor(paletteSize)/64];
+            for(int i = 0; i < size; i++) {
+                write(data, i, indices[i]);
+            }
+        }
+        return new State(palette, paletteSize, data, light.sunlight, light.blocklight, light.uniformSunlight, light.uniformBlocklight);
+    }
+
+    private void copyStates(State state, short[] dest) {
+        for(int i = 0; i < size; i++) {
+            dest[i] = state.palette[read(state.data, i)];
+        }
+    }
+
+    private NibbleArray3d filledNibbleArray(int value) {
+        NibbleArray3d array = new NibbleArray3d(size);
+        array.fill(value);
+        return array;
+    }
+
+    private static int getNibble(byte[] nibbles, int index) {
+        return nibbles[index >> 1] >> ((index & 1) << 2) & 0xF;
+    }
+
+    private static boolean isUniform(NibbleArray3d array) {
+        byte[] bytes = array.getData();
+        byte first = bytes[0];
+        if((first & 0xF) != (first >> 4 & 0xF))
+            return false;
+        for(byte b : bytes) {
+            if(b != first)
+                return false;
+        }
+        return true;
+    }
+
+    private int read(long[] data, int index) {
+        int bits = data.length*64/size;
+        int bitIndex = index*bits;
+        return (int)(data[bitIndex >>> 6] >>> (bitIndex & 63)) & ((1 << bits) - 1);
+    }
+
+    private void write(long[] data, int index, int value) {
+        int bits = data.length*64/size;
+        int bitIndex = index*bits;
+        int shift = bitIndex & 63;
+        long mask = ((1L << bits) - 1) << shift;
+        data[bitIndex >>> 6] = (data[bitIndex >>> 6] & ~mask) | ((long)value << shift);
+    }
+
+    private static int indexOf(short[] palette, int paletteSize, int state) {
+        for(int i = 0; i < paletteSize; i++) {
+            if((palette[i] & 0xFFFF) == state)
+                return i;
+        }
+        return -1;
+    }
+
+    private static int bitsFor(int paletteSize) {
+        int bits = 1;
+        while(paletteSize > 1 << bits) {
+            bits *= 2;
+        }
+        if(bits > MAX_BITS_PER_ENTRY)
+            throw new IllegalStateException("Palette overflow");
+        return bits;
+    }
+
+    private int getIndex(int x, int y, int z) {
+        return x + z*width + y*width*depth;
+    }
+
+    /**
+     * Everything a reader needs, published at once. The arrays are only written in place while their state is the current one.
+     */
+    private static final class State {
+        /**
+         * Block states in use. Same format as FlatBlockStorage: last nibble is metadata, everything up to that is block id.
+         */
+        final short[] palette;
+        final int paletteSize;
+        /**
+         * Packed palette indices. Entries never straddle two longs, and the amount of bits per entry is always data.length*64/size.
+         *
+         * Null when every block in the storage is palette[0].
+         */
+        final long[] data;
+        /**
+         * Null when every block has the light level in uniformSunlight / uniformBlocklight
+         */
+        final NibbleArray3d sunlight, blocklight;
+        final int uniformSunlight, uniformBlocklight;
+
+        State(short[] palette, int paletteSize, long[] data,
+              NibbleArray3d sunlight, NibbleArray3d blocklight, int uniformSunlight, int uniformBlocklight) {
+            this.palette = palette;
+            this.paletteSize = paletteSize;
+            this.data = data;
+            this.sunlight = sunlight;
+            this.blocklight = blocklight;
+            this.uniformSunlight = uniformSunlight;
+            this.uniformBlocklight = uniformBlocklight;
+        }
+
+        State withLight(NibbleArray3d sunlight, int uniformSunlight, NibbleArray3d blocklight, int uniformBlocklight) {
+            return new State(palette, paletteSize, data, sunlight, blocklight, uniformSunlight, uniformBlocklight);
+        }
+    }
+
+}
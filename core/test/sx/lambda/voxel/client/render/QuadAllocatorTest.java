@@ -0,0 +1,119 @@
+package sx.lambda.voxel.client.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QuadAllocatorTest {
+
+    @Test
+    public void allocatesFirstFit() {
+        QuadAllocator space = new QuadAllocator(100);
+        assertTrue(space.isEmpty());
+        assertEquals(0, space.allocate(10));
+        assertEquals(10, space.allocate(20));
+        assertEquals(30, space.allocate(70));
+        assertEquals(-1, space.allocate(1));
+        assertFalse(space.isEmpty());
+    }
+
+    @Test
+    public void reusesTheFirstGapBigEnough() {
+        QuadAllocator space = new QuadAllocator(100);
+        space.allocate(10);
+        space.allocate(10);
+        space.allocate(30);
+        space.allocate(10);
+        space.release(10, 10);
+        space.release(20, 30);
+        // Released neighbors merged into one gap of 40 at 10
+        assertTrue(space.isFree(10, 50));
+        assertEquals(10, space.allocate(35));
+        assertEquals(45, space.allocate(5));
+        assertEquals(60, space.allocate(40));
+    }
+
+    @Test
+    public void mergesReleasesWithFreeSpaceOnBothSides() {
+        QuadAllocator space = new QuadAllocator(30);
+        space.allocate(10);
+        space.allocate(10);
+        space.allocate(10);
+        space.release(0, 10);
+        space.release(20, 10);
+        assertFalse(space.isFree(0, 30));
+
+        space.release(10, 10);
+        assertTrue(space.isFree(0, 30));
+        assertTrue(space.isEmpty());
+        assertEquals(0, space.allocate(30));
+    }
+
+    @Test
+    public void mergesReleasesWithTheTailOfTheBuffer() {
+        QuadAllocator space = new QuadAllocator(64);
+        space.allocate(16);
+        space.allocate(16);
+        space.release(16, 16);
+        assertTrue(space.isFree(16, 64));
+        assertEquals(16, space.allocate(48));
+    }
+
+    @Test
+    public void shrinkingReleasesTheEndOfARange() {
+        QuadAllocator space = new QuadAllocator(64);
+        space.allocate(32);
+        space.allocate(8);
+        // First slice shrinks from 32 to 20
+        space.release(20, 12);
+        assertTrue(space.isFree(20, 32));
+        assertFalse(space.isFree(20, 33));
+        assertEquals(20, space.allocate(12));
+    }
+
+    @Test
+    public void extendsIntoFreeSpaceRightAfterARange() {
+        QuadAllocator space = new QuadAllocator(64);
+        space.allocate(16);
+        assertTrue(space.extend(16, 8));
+        assertFalse(space.isFree(16, 24));
+        assertTrue(space.isFree(24, 64));
+
+        // Space right after it is taken now, so this has to fail
+        space.allocate(40);
+        assertFalse(space.extend(24, 1));
+    }
+
+    @Test
+    public void extendOnlyTakesWhatFits() {
+        QuadAllocator space = new QuadAllocator(32);
+        space.allocate(8);
+        space.allocate(8);
+        space.release(0, 8);
+        // Gap of 8 before the second range
+        assertFalse(space.extend(0, 9));
+        assertTrue(space.isFree(0, 8));
+        assertTrue(space.extend(0, 8));
+        assertEquals(16, space.allocate(16));
+        assertEquals(-1, space.allocate(1));
+    }
+
+    @Test
+    public void extendedSpaceMergesBackWhenReleased() {
+        QuadAllocator space = new QuadAllocator(32);
+        space.allocate(8);
+        space.extend(8, 8);
+        space.release(0, 16);
+        assertTrue(space.isEmpty());
+    }
+
+    @Test
+    public void releasingNothingDoesNothing() {
+        QuadAllocator space = new QuadAllocator(16);
+        space.allocate(16);
+        space.release(4, 0);
+        assertFalse(space.isFree(4, 5));
+        assertEquals(-1, space.allocate(1));
+    }
+
+}
@@ -0,0 +1,172 @@
+package sx.lambda.voxel.util;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentLongMapTest {
+
+    @Test
+    public void putGetAndRemove() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1, "a"));
+        assertNull(map.put(-1, "b"));
+        assertNull(map.put(Long.MIN_VALUE, "c"));
+        assertEquals(3, map.size());
+        assertEquals("a", map.get(1));
+        assertEquals("b", map.get(-1));
+        assertEquals("c", map.get(Long.MIN_VALUE));
+        assertNull(map.get(2));
+
+        assertEquals("a", map.put(1, "d"));
+        assertEquals("d", map.get(1));
+        assertEquals(3, map.size());
+
+        assertEquals("b", map.remove(-1));
+        assertNull(map.remove(-1));
+        assertNull(map.get(-1));
+        assertFalse(map.containsKey(-1));
+        assertEquals(2, map.size());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void rejectsNullValues() {
+        new ConcurrentLongMap<String>().put(1, null);
+    }
+
+    @Test
+    public void reusesTombstonesForTheSameKey() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        map.put(5, "a");
+        map.remove(5);
+        assertEquals(0, map.size());
+        assertNull(map.put(5, "b"));
+        assertEquals(1, map.size());
+        assertEquals("b", map.get(5));
+    }
+
+    @Test
+    public void lookupsProbePastTombstones() {
+        // Small table, so lots of keys share probe chains
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(4);
+        for(long key = 0; key < 6; key++) {
+            map.put(key, key);
+        }
+        for(long key = 0; key < 6; key += 2) {
+            map.remove(key);
+        }
+        for(long key = 0; key < 6; key++) {
+            if(key % 2 == 0) {
+                assertNull(map.get(key));
+            } else {
+                assertEquals(key, (long) map.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void churnDoesntLoseEntries() {
+        // Adding and removing chunks over and over fills the table with tombstones, which get cleared out by rebuilds
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(16);
+        for(long key = 0; key < 10000; key++) {
+            map.put(key, key);
+            if(key >= 8) {
+                assertEquals(key - 8, (long) map.remove(key - 8));
+            }
+            assertEquals(Math.min(key + 1, 8), map.size());
+        }
+        for(long key = 10000 - 8; key < 10000; key++) {
+            assertEquals(key, (long) map.get(key));
+        }
+        assertNull(map.get(10000 - 9));
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(1);
+        for(long key = 0; key < 5000; key++) {
+            map.put(key * 31, key);
+        }
+        assertEquals(5000, map.size());
+        for(long key = 0; key < 5000; key++) {
+            assertEquals(key, (long) map.get(key * 31));
+        }
+    }
+
+    @Test
+    public void iteratesLiveValues() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        for(long key = 0; key < 100; key++) {
+            map.put(key, key);
+        }
+        for(long key = 0; key < 100; key += 3) {
+            map.remove(key);
+        }
+        Set<Long> seen = new HashSet<>();
+        for(Long value : map.values()) {
+            assertTrue(seen.add(value));
+            assertTrue(value % 3 != 0);
+        }
+        assertEquals(map.size(), seen.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.iterator().hasNext());
+    }
+
+    @Test(timeout = 30000)
+    public void readersSeeStableEntriesThroughResizes() throws Exception {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(16);
+        int stable = 64;
+        for(long key = 0; key < stable; key++) {
+            map.put(key, key);
+        }
+
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread[] readers = new Thread[3];
+        for(int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                while(!done.get()) {
+                    for(long key = 0; key < stable; key++) {
+                        Long value = map.get(key);
+                        if(value == null || value != key) {
+                            failure.compareAndSet(null, "Key " + key + " read as " + value);
+                            return;
+                        }
+                    }
+                    for(Long value : map) {
+                        if(value < 0 || value >= 5000) {
+                            failure.compareAndSet(null, "Iterated over unknown value " + value);
+                            return;
+                        }
+                    }
+                }
+            });
+            readers[i].start();
+        }
+
+        // Keys that come and go, forcing both growth and tombstone rebuilds
+        for(long round = 0; round < 20; round++) {
+            for(long key = 1000; key < 5000; key++) {
+                map.put(key, key);
+            }
+            for(long key = 1000; key < 5000; key++) {
+                map.remove(key);
+            }
+        }
+        done.set(true);
+        for(Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get(), failure.get());
+        assertEquals(stable, map.size());
+    }
+
+}
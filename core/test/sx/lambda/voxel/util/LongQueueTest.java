@@ -0,0 +1,83 @@
+package sx.lambda.voxel.util;
+
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+public class LongQueueTest {
+
+    @Test
+    public void pollsInInsertionOrder() {
+        LongQueue queue = new LongQueue(4);
+        assertTrue(queue.isEmpty());
+        queue.add(3);
+        queue.add(-1);
+        queue.add(Long.MAX_VALUE);
+        assertEquals(3, queue.size());
+        assertEquals(3, queue.poll());
+        assertEquals(-1, queue.poll());
+        assertEquals(Long.MAX_VALUE, queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void pollingAnEmptyQueueThrows() {
+        new LongQueue().poll();
+    }
+
+    @Test
+    public void wrapsAroundTheEndOfTheBuffer() {
+        LongQueue queue = new LongQueue(4);
+        long next = 0, expected = 0;
+        // Stays at 3 elements, so the head walks around the buffer many times without growing it
+        for(int i = 0; i < 3; i++) {
+            queue.add(next++);
+        }
+        for(int i = 0; i < 100; i++) {
+            assertEquals(expected++, queue.poll());
+            queue.add(next++);
+            assertEquals(3, queue.size());
+        }
+        while(!queue.isEmpty()) {
+            assertEquals(expected++, queue.poll());
+        }
+        assertEquals(next, expected);
+    }
+
+    @Test
+    public void growsWhileWrapped() {
+        LongQueue queue = new LongQueue(4);
+        long next = 0, expected = 0;
+        // Move the head to the middle of the buffer, so the elements wrap around the end when it fills up
+        for(int i = 0; i < 3; i++) {
+            queue.add(next++);
+        }
+        assertEquals(expected++, queue.poll());
+        assertEquals(expected++, queue.poll());
+
+        for(int i = 0; i < 50; i++) {
+            queue.add(next++);
+        }
+        assertEquals(51, queue.size());
+        while(!queue.isEmpty()) {
+            assertEquals(expected++, queue.poll());
+        }
+        assertEquals(next, expected);
+    }
+
+    @Test
+    public void clearEmptiesTheQueue() {
+        LongQueue queue = new LongQueue(2);
+        for(int i = 0; i < 10; i++) {
+            queue.add(i);
+        }
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+        queue.add(42);
+        assertEquals(42, queue.poll());
+    }
+
+}
@@ -0,0 +1,85 @@
+package sx.lambda.voxel.world;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import sx.lambda.voxel.util.LongQueue;
+import sx.lambda.voxel.util.Vec3i;
+import sx.lambda.voxel.world.chunk.Chunk;
+import sx.lambda.voxel.world.chunk.IChunk;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class LightPropagatorTest {
+
+    private static final int CHUNK_SIZE = 16;
+    private static final int HEIGHT = 256;
+
+    private IChunk chunk;
+    private LightingEngine engine;
+    private LightPropagator propagator;
+
+    @Before
+    public void setUp() {
+        // Just enough of a world for one chunk at the origin, everything else reads as unloaded
+        IWorld world = (IWorld)Proxy.newProxyInstance(IWorld.class.getClassLoader(), new Class<?>[]{IWorld.class}, (proxy, method, args) -> {
+            switch(method.getName()) {
+                case "getChunkSize":
+                    return CHUNK_SIZE;
+                case "getHeight":
+                    return HEIGHT;
+                case "getChunk":
+                    if(args.length == 2 && (int)args[0] >= 0 && (int)args[0] < CHUNK_SIZE && (int)args[1] >= 0 && (int)args[1] < CHUNK_SIZE)
+                        return chunk;
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        chunk = new Chunk(world, new Vec3i(0, 0, 0), null, false);
+        engine = new LightingEngine(world);
+        propagator = new BlocklightPropagator(world, engine);
+    }
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void removedLightDoesNotComeBackFromEmptySections() {
+        // Light 14 reaches y=31 at level 1, so the section above it never gets storage
+        int y = 31 - 13;
+        propagate(LightingEngine.pack(8, y, 8, 14, LightingEngine.OFFER));
+        assertEquals(14, chunk.getBlocklightUnchecked(8, y, 8));
+        assertEquals(1, chunk.getBlocklightUnchecked(8, 31, 8));
+        assertEquals(0, chunk.getBlocklightUnchecked(8, 32, 8));
+
+        propagate(LightingEngine.pack(8, y, 8, 0, LightingEngine.REMOVE));
+        for(int by = 0; by < HEIGHT; by++) {
+            for(int bz = 0; bz < CHUNK_SIZE; bz++) {
+                for(int bx = 0; bx < CHUNK_SIZE; bx++) {
+                    assertEquals("Blocklight at " + bx + "," + by + "," + bz, 0, chunk.getBlocklightUnchecked(bx, by, bz));
+                }
+            }
+        }
+        // Sections that got storage for the light are still open sky
+        assertEquals(15, chunk.getSunlightUnchecked(8, y, 8));
+    }
+
+    private void propagate(long update) {
+        LongQueue removals = new LongQueue();
+        LongQueue spreads = new LongQueue();
+        int kind = LightingEngine.unpackKind(update);
+        if(kind == LightingEngine.REMOVE || kind == LightingEngine.REMOVE_OFFER) {
+            removals.add(update);
+        } else {
+            spreads.add(update);
+        }
+        propagator.propagate(removals, spreads, new ArrayList<>());
+    }
+
+}
@@ -0,0 +1,225 @@
+package sx.lambda.voxel.world.chunk;
+
+import org.junit.Test;
+import org.spacehq.mc.protocol.data.game.chunk.NibbleArray3d;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PalettedBlockStorageTest {
+
+    private static final int SIZE = 16;
+
+    @Test
+    public void startsOutAsUniformAir() throws Exception {
+        PalettedBlockStorage storage = new PalettedBlockStorage(SIZE, SIZE, SIZE);
+        assertTrue(storage.isUniform());
+        assertEquals(0, storage.getUniformState());
+        assertEquals(1, storage.getPaletteSize());
+        assertEquals(0, storage.getBitsPerEntry());
+        assertEquals(0, storage.getId(3, 4, 5));
+        assertEquals(0, storage.getSunlight(3, 4, 5));
+        assertEquals(0, storage.getBlocklight(3, 4, 5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSizesThatArentAMultipleOf64() {
+        new PalettedBlockStorage(3, 3, 3);
+    }
+
+    @Test(expected = BlockStorage.CoordinatesOutOfBoundsException.class)
+    public void rejectsOutOfBoundsWrites() throws Exception {
+        new PalettedBlockStorage(SIZE, SIZE, SIZE).setId(SIZE, 0, 0, 1);
+    }
+
+    @Test
+    public void settingTheSameStateKeepsItUniform() throws Exception {
+        PalettedBlockStorage storage = new PalettedBlockStorage(SIZE, SIZE, SIZE);
+        storage.setId(1, 2, 3, 0);
+        storage.setMeta(1, 2, 3, 0);
+        assertTrue(storage.isUniform());
+        assertEquals(0, storage.getBitsPerEntry());
+    }
+
+    @Test
+    public void growsThroughEveryIndexWidth() throws Exception {
+        PalettedBlockStorage storage = new PalettedBlockStorage(SIZE, SIZE, SIZE);
+        // Palette size at which each width is first needed, air already being in the palette
+        int[] thresholds = {2, 3, 5, 17, 257};
+        int[] bits = {1, 2, 4, 8, 16};
+        int step = 0;
+        for(int id = 1; id < 300; id++) {
+            int index = id*13 % (SIZE*SIZE*SIZE);
+            storage.setId(x(index), y(index), z(index), id);
+            int paletteSize = id + 1;
+            assertEquals(paletteSize, storage.getPaletteSize());
+            if(step < thresholds.length && paletteSize == thresholds[step]) {
+                assertEquals("Bits for a palette of " + paletteSize, bits[step], storage.getBitsPerEntry());
+                step++;
+            }
+            // Everything written so far survives each resize
+            for(int check = 1; check <= id; check++) {
+                int checkIndex = check*13 % (SIZE*SIZE*SIZE);
+                assertEquals(check, storage.getId(x(checkIndex), y(checkIndex), z(checkIndex)));
+            }
+        }
+        assertEquals(bits.length, step);
+        assertEquals(0, storage.getId(0, 0, 1));
+        assertFalse(storage.isUniform());
+        assertEquals(-1, storage.getUniformState());
+    }
+
+    @Test
+    public void keepsIdAndMetaSeparate() throws Exception {
+        PalettedBlockStorage storage = new PalettedBlockStorage(SIZE, SIZE, SIZE);
+        storage.setId(4, 5, 6, 35);
+        storage.setMeta(4, 5, 6, 14);
+        assertEquals(35, storage.getId(4, 5, 6));
+        assertEquals(14, storage.getMeta(4, 5, 6));
+        storage.setId(4, 5, 6, 1);
+        assertEquals(14, storage.getMeta(4, 5, 6));
+        assertEquals(1 << 4 | 14, storage.getStateUnchecked(4 + 6*SIZE + 5*SIZE*SIZE));
+    }
+
+    @Test
+    public void compactCollapsesBackToUniform() throws Exception {
+        PalettedBlockStorage storage = new PalettedBlockStorage(SIZE, SIZE, SIZE);
+        storage.setId(1, 1, 1, 1);
+        storage.setId(2, 2, 2, 2);
+        storage.setId(1, 1, 1, 0);
+        storage.setId(2, 2, 2, 0);
+        assertFalse(storage.isUniform());
+
+        storage.compact();
+        assertTrue(storage.isUniform());
+        assertEquals(0, storage.getUniformState());
+        assertEquals(1, storage.getPaletteSize());
+        assertEquals(0, storage.getId(2, 2, 2));
+
+        // Writes after compacting start from scratch
+        storage.setId(5, 5, 5, 7);
+        assertEquals(7, storage.getId(5, 5, 5));
+        assertEquals(0, storage.getId(5, 5, 6));
+        assertEquals(2, storage.getPaletteSize());
+    }
+
+    @Test
+    public void compactCollapsesToTheRemainingState() throws Exception {
+        PalettedBlockStorage storage = new PalettedBlockStorage(SIZE, SIZE, SIZE);
+        short[] stone = new short[SIZE*SIZE*SIZE];
+        Arrays.fill(stone, (short)(1 << 4));
+        stone[0] = 0;
+        storage.setBlocks(stone);
+        storage.setId(0, 0, 0, 1);
+
+        storage.compact();
+        assertTrue(storage.isUniform());
+        assertEquals(1 << 4, storage.getUniformState());
+        assertEquals(1, storage.getId(0, 0, 0));
+        assertEquals(1, storage.getId(15, 15, 15));
+    }
+
+    @Test
+    public void compactDropsUnusedPaletteEntries() throws Exception {
+        PalettedBlockStorage storage = new PalettedBlockStorage(SIZE, SIZE, SIZE);
+        for(int id = 1; id <= 4; id++) {
+            storage.setId(id, 0, 0, id);
+        }
+        assertEquals(5, storage.getPaletteSize());
+        assertEquals(4, storage.getBitsPerEntry());
+        storage.setId(3, 0, 0, 1);
+        storage.setId(4, 0, 0, 1);
+
+        storage.compact();
+        assertEquals(3, storage.getPaletteSize());
+        assertEquals(2, storage.getBitsPerEntry());
+        assertEquals(0, storage.getId(0, 0, 0));
+        assertEquals(1, storage.getId(1, 0, 0));
+        assertEquals(2, storage.getId(2, 0, 0));
+        assertEquals(1, storage.getId(3, 0, 0));
+        assertEquals(1, storage.getId(4, 0, 0));
+        assertEquals(0, storage.getId(5, 0, 0));
+    }
+
+    @Test
+    public void setBlocksRoundTrips() {
+        PalettedBlockStorage storage = new PalettedBlockStorage(SIZE, SIZE, SIZE);
+        short[] blocks = new short[SIZE*SIZE*SIZE];
+        for(int i = 0; i < blocks.length; i++) {
+            blocks[i] = (short)((i % 20) << 4 | i % 3);
+        }
+        storage.setBlocks(blocks);
+        assertEquals(60, storage.getPaletteSize());
+        assertEquals(8, storage.getBitsPerEntry());
+
+        short[] copy = new short[blocks.length];
+        storage.copyStates(0, blocks.length, copy, 0);
+        assertArrayEquals(blocks, copy);
+
+        storage.compact();
+        storage.copyStates(0, blocks.length, copy, 0);
+        assertArrayEquals(blocks, copy);
+    }
+
+    @Test
+    public void lightStaysUniformUntilItDiffers() throws Exception {
+        PalettedBlockStorage storage = new PalettedBlockStorage(SIZE, SIZE, SIZE);
+        storage.setSunlight(1, 2, 3, 0);
+        storage.setSunlight(4, 5, 6, 15);
+        storage.setBlocklight(4, 5, 6, 9);
+        assertEquals(15, storage.getSunlight(4, 5, 6));
+        assertEquals(0, storage.getSunlight(1, 2, 3));
+        assertEquals(9, storage.getBlocklight(4, 5, 6));
+        assertEquals(0, storage.getBlocklight(4, 5, 7));
+
+        byte[] light = new byte[2];
+        int index = 4 + 6*SIZE + 5*SIZE*SIZE;
+        storage.copyLight(index, index + 2, light, 0);
+        assertEquals((byte)(15 << 4 | 9), light[0]);
+        assertEquals(0, light[1]);
+    }
+
+    @Test
+    public void compactCollapsesUniformLight() throws Exception {
+        PalettedBlockStorage storage = new PalettedBlockStorage(SIZE, SIZE, SIZE);
+        NibbleArray3d sunlight = new NibbleArray3d(SIZE*SIZE*SIZE);
+        sunlight.fill(15);
+        storage.setSunlight(sunlight);
+        storage.setBlocklight(0, 0, 0, 4);
+        storage.setBlocklight(0, 0, 0, 0);
+
+        storage.compact();
+        // Arrays that were dropped aren't written to anymore
+        sunlight.set(0, 0, 0, 3);
+        assertEquals(15, storage.getSunlight(0, 0, 0));
+        assertEquals(15, storage.getSunlightUnchecked(100));
+        assertEquals(0, storage.getBlocklight(0, 0, 0));
+
+        storage.setSunlight(1, 1, 1, 12);
+        assertEquals(12, storage.getSunlight(1, 1, 1));
+        assertEquals(15, storage.getSunlight(1, 1, 2));
+    }
+
+    @Test
+    public void compactKeepsLightThatDiffers() throws Exception {
+        PalettedBlockStorage storage = new PalettedBlockStorage(SIZE, SIZE, SIZE);
+        storage.setSunlight(7, 7, 7, 11);
+        storage.compact();
+        assertEquals(11, storage.getSunlight(7, 7, 7));
+        assertEquals(0, storage.getSunlight(7, 7, 8));
+    }
+
+    private static int x(int index) {
+        return index % SIZE;
+    }
+
+    private static int z(int index) {
+        return index / SIZE % SIZE;
+    }
+
+    private static int y(int index) {
+        return index / (SIZE*SIZE);
+    }
+
+}